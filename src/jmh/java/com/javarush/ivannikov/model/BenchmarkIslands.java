@@ -0,0 +1,35 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Grass;
+import com.javarush.ivannikov.factory.AnimalFactory;
+
+/**
+ * Заселение острова для бенчмарков с заданной плотностью
+ * Использует потоки CellRandom, поэтому каждая итерация стартует с одинаковой популяции
+ */
+final class BenchmarkIslands {
+    static final long SEED = 42;
+
+    private BenchmarkIslands() {
+    }
+
+    /**
+     * @param herbivoresPerCell число травоядных в каждой клетке; хищников вдвое меньше
+     */
+    static void populate(Island island, int herbivoresPerCell) {
+        CellRandom random = new CellRandom();
+        for (int i = 0; i < island.getRows(); i++) {
+            for (int j = 0; j < island.getCols(); j++) {
+                Location location = island.getLocation(i, j);
+                random.reseed(CellRandom.seedFor(SEED, -1, (long) i * island.getCols() + j));
+                location.setGrass(random.nextBoolean() ? new Grass(true) : null);
+                for (int k = 0; k < herbivoresPerCell; k++) {
+                    island.addOrganism(AnimalFactory.randomHerbivore(random), i, j);
+                }
+                for (int k = 0; k < herbivoresPerCell / 2; k++) {
+                    island.addOrganism(AnimalFactory.randomPredator(random), i, j);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.javarush.ivannikov.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время шага симуляции и подсчёта живых животных
+ * Популяция острова быстро вымирает, поэтому шаги на одном острове в течение итерации
+ * мерили бы в основном пустой остров. simulateSteps перед каждым вызовом заново заселяет
+ * остров с тем же seed и выполняет STEPS шагов: каждый вызов — одна и та же работа,
+ * результат — миллисекунды на STEPS шагов от одинаковой начальной популяции.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class IslandBenchmark {
+    static final int STEPS = 5;
+
+    @State(Scope.Benchmark)
+    public static class StepState {
+        @Param({"20", "100", "400"})
+        private int gridSize;
+
+        @Param({"1", "4"})
+        private int density;
+
+        @Param({"1", "4", "16"})
+        private int threads;
+
+        @Param({"ROW_BANDS", "TILES", "VIRTUAL"})
+        private StepScheduler scheduler;
+
+        private Island island;
+
+        /**
+         * Заселение и создание пула не входят в замер; вызов длится миллисекунды,
+         * поэтому подготовка перед каждым вызовом не искажает результат
+         */
+        @Setup(Level.Invocation)
+        public void setUp() {
+            island = new Island(gridSize, gridSize, new IslandSettings()
+                    .setParallelism(threads)
+                    .setScheduler(scheduler)
+                    .setSeed(BenchmarkIslands.SEED));
+            BenchmarkIslands.populate(island, density);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            island.shutdownExecutor();
+        }
+    }
+
+    /**
+     * Подсчёт не зависит от динамики популяции, остров заселяется один раз
+     */
+    @State(Scope.Benchmark)
+    public static class CountState {
+        @Param({"20", "100", "400"})
+        private int gridSize;
+
+        @Param({"1", "4"})
+        private int density;
+
+        private Island island;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            island = new Island(gridSize, gridSize, new IslandSettings().setSeed(BenchmarkIslands.SEED));
+            BenchmarkIslands.populate(island, density);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            island.shutdownExecutor();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int simulateSteps(StepState state) {
+        for (int step = 0; step < STEPS; step++) {
+            state.island.simulateStep();
+        }
+        return state.island.countAliveOrganisms();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int countAliveOrganisms(CountState state) {
+        return state.island.countAliveOrganisms();
+    }
+}
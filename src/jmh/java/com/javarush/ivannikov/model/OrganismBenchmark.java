@@ -0,0 +1,108 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Grass;
+import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.entity.Predator;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.factory.AnimalFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции отдельного животного и локации: перемещение, питание хищника, размножение
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class OrganismBenchmark {
+    static final int BATCH = 256;
+
+    /**
+     * Один волк, который бродит по острову 32х32
+     */
+    @State(Scope.Thread)
+    public static class MoveState {
+        private Island island;
+        private Organism mover;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            island = new Island(32, 32, new IslandSettings().setParallelism(1));
+            mover = SpeciesRegistry.getDefault().get("WOLF").create();
+            island.getLocation(16, 16).addOrganism(mover, 16, 16);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            island.shutdownExecutor();
+        }
+    }
+
+    /**
+     * BATCH локаций с травоядными и одним хищником
+     * Питание и размножение меняют состав локации, поэтому каждая локация используется
+     * один раз, а партия пересоздаётся перед вызовом (Level.Invocation). Вызов обходит всю
+     * партию, так что подготовка между вызовами приходится на BATCH операций, а не на одну
+     * операцию длиной в наносекунды.
+     */
+    @State(Scope.Thread)
+    public static class CellState {
+        @Param({"4", "32", "256"})
+        private int organismsPerCell;
+
+        private Island island;
+        private final Location[] locations = new Location[BATCH];
+        private final Predator[] predators = new Predator[BATCH];
+
+        @Setup(Level.Trial)
+        public void setUpIsland() {
+            island = new Island(1, 1, new IslandSettings().setParallelism(1));
+        }
+
+        @Setup(Level.Invocation)
+        public void setUpLocations() {
+            CellRandom random = new CellRandom(BenchmarkIslands.SEED);
+            for (int b = 0; b < BATCH; b++) {
+                Location location = new Location(0, 0);
+                location.setGrass(new Grass(true));
+                for (int i = 0; i < organismsPerCell; i++) {
+                    location.addOrganism(AnimalFactory.randomHerbivore(random), 0, 0);
+                }
+                predators[b] = AnimalFactory.randomPredator(random);
+                location.addOrganism(predators[b], 0, 0);
+                locations[b] = location;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            island.shutdownExecutor();
+        }
+    }
+
+    @Benchmark
+    public void move(MoveState state) {
+        Organism mover = state.mover;
+        mover.setSpeed(mover.getMaxSpeed());
+        mover.move(state.island, state.island.getLocation(mover.getRow(), mover.getCol()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void predatorEat(CellState state) {
+        for (int b = 0; b < BATCH; b++) {
+            state.predators[b].eat(state.locations[b]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void reproduceSpeciesInLocation(CellState state) {
+        for (int b = 0; b < BATCH; b++) {
+            state.island.reproduceSpeciesInLocation(state.locations[b]);
+        }
+    }
+}
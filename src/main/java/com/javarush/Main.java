@@ -1,15 +1,21 @@
 package com.javarush;
 
+import com.javarush.ivannikov.event.LoggingEventSink;
+import com.javarush.ivannikov.event.SimulationEvents;
 import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.PopulationBackend;
 
 public class Main {
     public static void main(String[] args) {
-        Island island = new Island(2, 2);
+        PopulationBackend backend = args.length > 0
+                ? PopulationBackend.valueOf(args[0].toUpperCase())
+                : PopulationBackend.OBJECTS;
+        SimulationEvents.start(new LoggingEventSink());
+        Island island = new Island(2, 2, backend);
         island.populate();
-        while (island.countAliveOrganisms() > 0) {
-            island.simulateStep();
-        }
+        island.run(Long.MAX_VALUE, null);
         island.shutdownExecutor();
+        SimulationEvents.stop();
         System.out.println("Симуляция завершена — все животные вымерли.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+package com.javarush.ivannikov.batch;
+
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.StepListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Пакетный прогон плана перебора в одной JVM
+ * <p>
+ * Все прогоны выполняются в одном ForkJoinPool: каждый прогон — задача пула, а остров
+ * прогона ставит свои полосы строк в тот же пул (IslandSettings.setExecutor), поэтому
+ * свободные потоки забирают работу и у соседних прогонов. Остров создаётся внутри задачи,
+ * так что в памяти одновременно живут не больше parallelism островов.
+ * <p>
+ * Итоги пишутся в один файл с разделителем табуляцией, по строке на прогон в порядке
+ * номеров, сразу по готовности:
+ * <pre>
+ * run repeat seed steps extinct ms КЛЮЧ_peak КЛЮЧ_extinct ... params error
+ * </pre>
+ * extinct — шаг вымирания всех животных, КЛЮЧ_peak и КЛЮЧ_extinct — наибольшая
+ * численность и шаг вымирания вида; «-» означает, что вымирания не было. params — значения
+ * осей перебора через «;». Упавший прогон не останавливает остальные, его ошибка
+ * записывается в столбец error.
+ */
+public class BatchRunner implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRunner.class);
+    private static final String NONE = "-";
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism число потоков общего пула
+     */
+    public BatchRunner(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Выполняет все прогоны плана и пишет итоги в output
+     *
+     * @return итоги в порядке номеров прогонов
+     */
+    public List<RunSummary> run(SweepPlan plan, Path output) {
+        List<SweepRun> runs = plan.getRuns();
+        LOG.info("Пакетный прогон: {} прогонов, потоков {}", runs.size(), pool.getParallelism());
+        long started = System.nanoTime();
+        List<Future<RunSummary>> futures = new ArrayList<>(runs.size());
+        for (SweepRun run : runs) {
+            futures.add(pool.submit(() -> execute(run)));
+        }
+        List<RunSummary> summaries = new ArrayList<>(runs.size());
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(header(plan));
+            writer.newLine();
+            for (Future<RunSummary> future : futures) {
+                RunSummary summary = await(future);
+                summaries.add(summary);
+                writer.write(format(summary));
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw new UncheckedIOException("Не удалось записать итоги в " + output, e);
+        }
+        LOG.info("Пакетный прогон завершён за {} мс, итоги в {}", (System.nanoTime() - started) / 1_000_000, output);
+        return summaries;
+    }
+
+    private RunSummary execute(SweepRun run) {
+        long started = System.nanoTime();
+        PopulationTracker tracker = new PopulationTracker(run.getRegistry().size());
+        try {
+            Island island = new Island(run.getRows(), run.getCols(), run.toSettings(pool));
+            island.populate();
+            tracker.onStepCompleted(island);
+            island.addStepListener(tracker);
+            long steps = island.run(run.getSteps(), null);
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            LOG.info("Прогон {} завершён за {} мс: шагов {}, животных {}",
+                    run.getIndex(), millis, steps, island.countAliveOrganisms());
+            return new RunSummary(run, steps, tracker.extinctionStep, tracker.peaks,
+                    tracker.speciesExtinctionSteps, millis, null);
+        } catch (RuntimeException e) {
+            LOG.error("Прогон {} завершился с ошибкой", run.getIndex(), e);
+            return new RunSummary(run, 0, -1, tracker.peaks, tracker.speciesExtinctionSteps,
+                    (System.nanoTime() - started) / 1_000_000, e.toString());
+        }
+    }
+
+    private static RunSummary await(Future<RunSummary> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Пакетный прогон прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Прогон завершился с ошибкой", e.getCause());
+        }
+    }
+
+    private static String header(SweepPlan plan) {
+        StringBuilder line = new StringBuilder("run\trepeat\tseed\tsteps\textinct\tms");
+        for (String key : plan.getSpeciesKeys()) {
+            line.append('\t').append(key).append("_peak\t").append(key).append("_extinct");
+        }
+        return line.append("\tparams\terror").toString();
+    }
+
+    private static String format(RunSummary summary) {
+        SweepRun run = summary.getRun();
+        StringBuilder line = new StringBuilder();
+        line.append(run.getIndex()).append('\t').append(run.getRepeat())
+                .append('\t').append(run.getSeed() != null ? run.getSeed().toString() : NONE)
+                .append('\t').append(summary.getSteps())
+                .append('\t').append(step(summary.getExtinctionStep()))
+                .append('\t').append(summary.getMillis());
+        for (int id = 0; id < run.getRegistry().size(); id++) {
+            line.append('\t').append(summary.getPeak(id))
+                    .append('\t').append(step(summary.getExtinctionStep(id)));
+        }
+        line.append('\t');
+        String separator = "";
+        for (Map.Entry<String, String> parameter : run.getParameters().entrySet()) {
+            line.append(separator).append(parameter.getKey()).append('=').append(parameter.getValue());
+            separator = ";";
+        }
+        line.append('\t').append(summary.isFailed() ? summary.getError().replaceAll("\\s+", " ") : NONE);
+        return line.toString();
+    }
+
+    private static String step(long step) {
+        return step < 0 ? NONE : Long.toString(step);
+    }
+
+    /**
+     * Останавливает общий пул
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Аргументы: план.properties итоги.tsv [потоков]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Использование: BatchRunner sweep.properties results.tsv [parallelism]");
+            System.exit(2);
+        }
+        SweepPlan plan = SweepPlan.load(Path.of(args[0]));
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        try (BatchRunner runner = new BatchRunner(parallelism)) {
+            List<RunSummary> summaries = runner.run(plan, Path.of(args[1]));
+            long failed = summaries.stream().filter(RunSummary::isFailed).count();
+            if (failed > 0) {
+                System.err.println("Прогонов завершилось с ошибкой: " + failed);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Наибольшая численность и шаги вымирания; вызывается потоком прогона после каждого шага
+     */
+    private static final class PopulationTracker implements StepListener {
+        private final long[] peaks;
+        private final long[] speciesExtinctionSteps;
+        private long extinctionStep = -1;
+
+        private PopulationTracker(int species) {
+            this.peaks = new long[species];
+            this.speciesExtinctionSteps = new long[species];
+            Arrays.fill(speciesExtinctionSteps, -1);
+        }
+
+        @Override
+        public void onStepCompleted(Island island) {
+            long[] counts = island.getCensus().snapshot();
+            long total = 0;
+            for (int id = 0; id < counts.length; id++) {
+                peaks[id] = Math.max(peaks[id], counts[id]);
+                if (counts[id] == 0 && speciesExtinctionSteps[id] < 0) {
+                    speciesExtinctionSteps[id] = island.getStep();
+                }
+                total += counts[id];
+            }
+            if (total == 0 && extinctionStep < 0) {
+                extinctionStep = island.getStep();
+            }
+        }
+    }
+}
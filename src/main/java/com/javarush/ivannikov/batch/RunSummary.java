@@ -0,0 +1,74 @@
+package com.javarush.ivannikov.batch;
+
+/**
+ * Итог одного прогона перебора
+ * Шаг вымирания — первый шаг, после которого численность стала нулевой (0 — после
+ * заселения), или -1, если до конца прогона этого не случилось.
+ */
+public final class RunSummary {
+    private final SweepRun run;
+    private final long steps;
+    private final long extinctionStep;
+    private final long[] peaks;
+    private final long[] speciesExtinctionSteps;
+    private final long millis;
+    private final String error;
+
+    RunSummary(SweepRun run, long steps, long extinctionStep, long[] peaks, long[] speciesExtinctionSteps,
+               long millis, String error) {
+        this.run = run;
+        this.steps = steps;
+        this.extinctionStep = extinctionStep;
+        this.peaks = peaks;
+        this.speciesExtinctionSteps = speciesExtinctionSteps;
+        this.millis = millis;
+        this.error = error;
+    }
+
+    public SweepRun getRun() {
+        return run;
+    }
+
+    /**
+     * Число выполненных шагов
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Шаг, после которого на острове не осталось животных, или -1
+     */
+    public long getExtinctionStep() {
+        return extinctionStep;
+    }
+
+    /**
+     * Наибольшая численность вида за прогон, включая заселение
+     */
+    public long getPeak(int speciesId) {
+        return peaks[speciesId];
+    }
+
+    /**
+     * Шаг вымирания вида или -1
+     */
+    public long getExtinctionStep(int speciesId) {
+        return speciesExtinctionSteps[speciesId];
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * Сообщение об ошибке прогона или null
+     */
+    public String getError() {
+        return error;
+    }
+}
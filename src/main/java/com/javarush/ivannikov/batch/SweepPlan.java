@@ -0,0 +1,249 @@
+package com.javarush.ivannikov.batch;
+
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.model.PopulationBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * План перебора параметров для BatchRunner
+ * <p>
+ * Формат — properties в UTF-8. Значения через точку с запятой задают ось перебора;
+ * прогоны — все сочетания значений осей, и каждое сочетание повторяется repeats раз:
+ * <pre>
+ * steps = 500                 # наибольшее число шагов прогона
+ * repeats = 3                 # повторы сочетания; seed повтора — seed + номер повтора
+ * seed = 42                   # без seed прогоны недетерминированы
+ * speciesFile = my.properties # виды по умолчанию — как в SpeciesRegistry.getDefault()
+ * size = 40x40; 80x80         # строки x столбцы
+ * threads = 1                 # полос строк на шаг острова
+ * backend = OBJECTS; COMPACT
+ * sensing = 0; 3              # радиус направленного движения
+ * density.RABBIT = 0.5; 1.5   # равномерная плотность вида при заселении
+ * WOLF.speed = 2; 4           # любой параметр вида из файла видов
+ * </pre>
+ * Оси перебираются в алфавитном порядке ключей. Сочетания проверяются при загрузке
+ * плана, поэтому ошибка в параметрах видна до запуска первого прогона.
+ */
+public final class SweepPlan {
+    private static final String LIST_SEPARATOR = ";";
+    private static final String DENSITY_PREFIX = "density.";
+    private static final String DEFAULT_SPECIES_RESOURCE = "/species.properties";
+    private static final Set<String> PLAN_KEYS = Set.of("steps", "repeats", "seed", "speciesFile");
+    private static final Set<String> RUN_KEYS = Set.of("size", "threads", "backend", "sensing");
+
+    private final List<SweepRun> runs;
+    private final List<String> speciesKeys;
+
+    private SweepPlan(List<SweepRun> runs, List<String> speciesKeys) {
+        this.runs = Collections.unmodifiableList(runs);
+        this.speciesKeys = Collections.unmodifiableList(speciesKeys);
+    }
+
+    /**
+     * Загружает план из файла; путь speciesFile считается от каталога плана
+     */
+    public static SweepPlan load(Path path) {
+        Properties sweep = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            sweep.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать план перебора " + path, e);
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        return of(sweep, directory);
+    }
+
+    /**
+     * Строит план из уже прочитанных настроек
+     *
+     * @param directory каталог, от которого считается speciesFile; может быть null
+     */
+    public static SweepPlan of(Properties sweep, Path directory) {
+        long steps = longValue(sweep, "steps", 1000);
+        int repeats = (int) longValue(sweep, "repeats", 1);
+        if (steps < 0 || repeats <= 0) {
+            throw new IllegalArgumentException("Число шагов не может быть отрицательным, а повторов должно быть больше нуля");
+        }
+        Long seed = sweep.getProperty("seed") != null ? longValue(sweep, "seed", 0) : null;
+        Properties baseSpecies = speciesProperties(sweep.getProperty("speciesFile"), directory);
+        List<String> speciesKeys = SpeciesRegistry.of(baseSpecies).all().stream().map(Species::getKey).toList();
+
+        Map<String, List<String>> axes = new TreeMap<>();
+        for (String key : sweep.stringPropertyNames()) {
+            if (PLAN_KEYS.contains(key)) {
+                continue;
+            }
+            if (!isRunKey(key, speciesKeys)) {
+                throw new IllegalArgumentException("Неизвестный параметр перебора: " + key);
+            }
+            List<String> values = new ArrayList<>();
+            for (String value : sweep.getProperty(key).split(LIST_SEPARATOR)) {
+                if (!value.isBlank()) {
+                    values.add(value.trim());
+                }
+            }
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Не заданы значения параметра перебора " + key);
+            }
+            axes.put(key, values);
+        }
+
+        List<String> keys = new ArrayList<>(axes.keySet());
+        int[] position = new int[keys.size()];
+        List<SweepRun> runs = new ArrayList<>();
+        do {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (int a = 0; a < keys.size(); a++) {
+                parameters.put(keys.get(a), axes.get(keys.get(a)).get(position[a]));
+            }
+            try {
+                addRuns(runs, parameters, baseSpecies, steps, repeats, seed);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ошибка в сочетании " + parameters + ": " + e.getMessage(), e);
+            }
+        } while (advance(position, keys, axes));
+        return new SweepPlan(runs, speciesKeys);
+    }
+
+    /**
+     * Прогоны в порядке номеров
+     */
+    public List<SweepRun> getRuns() {
+        return runs;
+    }
+
+    /**
+     * Ключи видов в порядке номеров; одинаковы во всех прогонах плана
+     */
+    public List<String> getSpeciesKeys() {
+        return speciesKeys;
+    }
+
+    private static void addRuns(List<SweepRun> runs, Map<String, String> parameters, Properties baseSpecies,
+                                long steps, int repeats, Long seed) {
+        int rows = 100;
+        int cols = 100;
+        int threads = 1;
+        int sensing = 0;
+        PopulationBackend backend = PopulationBackend.OBJECTS;
+        Properties species = new Properties();
+        species.putAll(baseSpecies);
+        Map<String, Double> densities = new LinkedHashMap<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String key = parameter.getKey();
+            String value = parameter.getValue();
+            switch (key) {
+                case "size" -> {
+                    String[] sides = value.toLowerCase().split("x");
+                    if (sides.length != 2) {
+                        throw new IllegalArgumentException("Размер задаётся как строкиxстолбцы: " + value);
+                    }
+                    rows = Integer.parseInt(sides[0].trim());
+                    cols = Integer.parseInt(sides[1].trim());
+                    if (rows <= 0 || cols <= 0) {
+                        throw new IllegalArgumentException("Размер острова должен быть положительным");
+                    }
+                }
+                case "threads" -> threads = Integer.parseInt(value);
+                case "sensing" -> sensing = Integer.parseInt(value);
+                case "backend" -> backend = PopulationBackend.valueOf(value.toUpperCase());
+                default -> {
+                    if (key.startsWith(DENSITY_PREFIX)) {
+                        double density = Double.parseDouble(value);
+                        if (density < 0) {
+                            throw new IllegalArgumentException("Плотность не может быть отрицательной");
+                        }
+                        densities.put(key.substring(DENSITY_PREFIX.length()), density);
+                    } else {
+                        species.setProperty(key, value);
+                    }
+                }
+            }
+        }
+        if (threads <= 0 || sensing < 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным, радиус — неотрицательным");
+        }
+        SpeciesRegistry registry = SpeciesRegistry.of(species);
+        for (int repeat = 0; repeat < repeats; repeat++) {
+            runs.add(new SweepRun(runs.size(), repeat, parameters, rows, cols, steps,
+                    seed != null ? seed + repeat : null, threads, backend, sensing, registry, densities));
+        }
+    }
+
+    private static boolean advance(int[] position, List<String> keys, Map<String, List<String>> axes) {
+        for (int a = position.length - 1; a >= 0; a--) {
+            if (++position[a] < axes.get(keys.get(a)).size()) {
+                return true;
+            }
+            position[a] = 0;
+        }
+        return false;
+    }
+
+    private static boolean isRunKey(String key, List<String> speciesKeys) {
+        if (RUN_KEYS.contains(key)) {
+            return true;
+        }
+        if (key.startsWith(DENSITY_PREFIX)) {
+            return speciesKeys.contains(key.substring(DENSITY_PREFIX.length()));
+        }
+        int dot = key.indexOf('.');
+        return dot > 0 && speciesKeys.contains(key.substring(0, dot));
+    }
+
+    private static long longValue(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть целым числом: " + value, e);
+        }
+    }
+
+    /**
+     * Базовые параметры видов: speciesFile плана, свойство island.species или species.properties на classpath
+     */
+    private static Properties speciesProperties(String speciesFile, Path directory) {
+        Properties properties = new Properties();
+        String path = speciesFile != null ? speciesFile.trim() : System.getProperty("island.species");
+        try {
+            if (path != null) {
+                Path file = directory != null && speciesFile != null ? directory.resolve(path) : Path.of(path);
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                return properties;
+            }
+            try (InputStream in = SweepPlan.class.getResourceAsStream(DEFAULT_SPECIES_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Не найден файл видов " + DEFAULT_SPECIES_RESOURCE);
+                }
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать файл видов "
+                    + (path != null ? path : DEFAULT_SPECIES_RESOURCE), e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.javarush.ivannikov.batch;
+
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.model.IslandSettings;
+import com.javarush.ivannikov.model.PopulationBackend;
+import com.javarush.ivannikov.model.PopulationDensity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Один прогон плана перебора: размер острова, seed, виды и плотности заселения
+ */
+public final class SweepRun {
+    private final int index;
+    private final int repeat;
+    private final Map<String, String> parameters;
+    private final int rows;
+    private final int cols;
+    private final long steps;
+    private final Long seed;
+    private final int threads;
+    private final PopulationBackend backend;
+    private final int sensingRadius;
+    private final SpeciesRegistry registry;
+    private final Map<String, Double> densities;
+
+    SweepRun(int index, int repeat, Map<String, String> parameters, int rows, int cols, long steps, Long seed,
+             int threads, PopulationBackend backend, int sensingRadius, SpeciesRegistry registry,
+             Map<String, Double> densities) {
+        this.index = index;
+        this.repeat = repeat;
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+        this.rows = rows;
+        this.cols = cols;
+        this.steps = steps;
+        this.seed = seed;
+        this.threads = threads;
+        this.backend = backend;
+        this.sensingRadius = sensingRadius;
+        this.registry = registry;
+        this.densities = Collections.unmodifiableMap(new LinkedHashMap<>(densities));
+    }
+
+    /**
+     * Настройки острова прогона; задачи острова выполняются в общем пуле executor
+     */
+    public IslandSettings toSettings(ForkJoinPool executor) {
+        IslandSettings settings = new IslandSettings()
+                .setBackend(backend)
+                .setParallelism(threads)
+                .setSpeciesRegistry(registry)
+                .setSensingRadius(sensingRadius)
+                .setExecutor(executor);
+        if (seed != null) {
+            settings.setSeed(seed);
+        }
+        densities.forEach((key, density) -> settings.setDensity(key, PopulationDensity.uniform(density)));
+        return settings;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getRepeat() {
+        return repeat;
+    }
+
+    /**
+     * Значения осей перебора этого прогона в порядке осей
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Seed прогона или null, если прогон недетерминирован
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    public SpeciesRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,75 @@
+package com.javarush.ivannikov.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Запускает распределённый остров на одной машине: по процессу RegionNode на регион
+ * Аргументы: parts rows cols steps basePort [seed]. Дочерние процессы получают тот же
+ * classpath и JVM; после завершения печатается численность всего острова по шагам.
+ */
+public class RegionLauncher {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5) {
+            System.err.println("Использование: RegionLauncher parts rows cols steps basePort [seed]");
+            System.exit(2);
+        }
+        int parts = Integer.parseInt(args[0]);
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<Process> processes = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        Map<Long, Long> totals = new TreeMap<>();
+        for (int index = 0; index < parts; index++) {
+            List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                    RegionNode.class.getName(), String.valueOf(index)));
+            command.addAll(List.of(args));
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            processes.add(process);
+            Thread reader = new Thread(() -> collect(process, totals), "region-output-" + index);
+            reader.start();
+            readers.add(reader);
+        }
+        int failed = 0;
+        for (int index = 0; index < parts; index++) {
+            if (processes.get(index).waitFor() != 0) {
+                failed++;
+            }
+            readers.get(index).join();
+        }
+        totals.forEach((step, alive) -> System.out.println("step " + step + " alive " + alive));
+        if (failed > 0) {
+            System.err.println("Регионов завершилось с ошибкой: " + failed);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Складывает численность регионов по шагам из строк "region index step N alive M"
+     */
+    private static void collect(Process process, Map<Long, Long> totals) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] words = line.split(" ");
+                if (words.length == 6 && words[0].equals("region")) {
+                    synchronized (totals) {
+                        totals.merge(Long.parseLong(words[3]), Long.parseLong(words[5]), Long::sum);
+                    }
+                } else {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать вывод региона: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.javarush.ivannikov.cluster;
+
+/**
+ * Разбиение острова rows x cols на parts горизонтальных полос-регионов
+ * Регион index владеет строками [startRow(index), endRow(index)) и всеми столбцами,
+ * поэтому у него не больше двух соседей: сверху (index - 1) и снизу (index + 1).
+ */
+public final class RegionLayout {
+    private final int parts;
+    private final int rows;
+    private final int cols;
+
+    public RegionLayout(int parts, int rows, int cols) {
+        if (parts <= 0 || rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Число регионов и размер острова должны быть положительными");
+        }
+        if (parts > rows) {
+            throw new IllegalArgumentException("Регионов не может быть больше, чем строк острова");
+        }
+        this.parts = parts;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public int getParts() {
+        return parts;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int startRow(int index) {
+        return (int) ((long) index * rows / parts);
+    }
+
+    public int endRow(int index) {
+        return (int) ((long) (index + 1) * rows / parts);
+    }
+
+    public int height(int index) {
+        return endRow(index) - startRow(index);
+    }
+
+    /**
+     * Высота самого низкого региона
+     */
+    public int minHeight() {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < parts; i++) {
+            min = Math.min(min, height(i));
+        }
+        return min;
+    }
+}
@@ -0,0 +1,113 @@
+package com.javarush.ivannikov.cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Соединение с соседним регионом
+ * Кадры читает отдельный поток и складывает в очередь: оба соседа сначала отправляют
+ * свой кадр, а потом ждут чужой, и без фонового чтения большие кадры заблокировали бы
+ * обе стороны на записи.
+ * <p>
+ * Кадр (little-endian): int magic, int count, long step, затем count записей
+ * по RECORD_SIZE байт, формат записи задаёт RegionNode.
+ */
+final class RegionLink implements AutoCloseable {
+    static final int FRAME_MAGIC = 0x4E474552;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 16;
+    private static final long POLL_MILLIS = 100;
+
+    private final SocketChannel channel;
+    private final String name;
+    private final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    private volatile Exception failure;
+
+    RegionLink(SocketChannel channel, String name) {
+        this.channel = channel;
+        this.name = name;
+        this.reader = new Thread(this::readFrames, "region-link-" + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Отправляет кадр целиком; буфер должен быть подготовлен к чтению (flip)
+     */
+    void send(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Ждёт следующий кадр соседа
+     *
+     * @return кадр, позиция которого стоит на первой записи
+     */
+    ByteBuffer receive() throws IOException, InterruptedException {
+        while (true) {
+            ByteBuffer frame = frames.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (frame != null) {
+                return frame;
+            }
+            if (failure != null) {
+                throw new IOException("Соединение с регионом " + name + " прервано", failure);
+            }
+        }
+    }
+
+    private void readFrames() {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (true) {
+                header.clear();
+                if (!readFully(header, true)) {
+                    throw new EOFException("Регион " + name + " закрыл соединение");
+                }
+                header.flip();
+                if (header.getInt(0) != FRAME_MAGIC) {
+                    throw new IOException("Неверный заголовок кадра от региона " + name);
+                }
+                int count = header.getInt(4);
+                ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                frame.put(header);
+                readFully(frame, false);
+                frame.flip();
+                frame.position(HEADER_SIZE);
+                frames.add(frame);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * @return false, если соединение закрыто до первого байта
+     */
+    private boolean readFully(ByteBuffer buffer, boolean allowEnd) throws IOException {
+        boolean started = false;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (allowEnd && !started) {
+                    return false;
+                }
+                throw new EOFException("Кадр от региона " + name + " оборван");
+            }
+            started = true;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
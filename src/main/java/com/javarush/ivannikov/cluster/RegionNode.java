@@ -0,0 +1,354 @@
+package com.javarush.ivannikov.cluster;
+
+import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.IslandBoundary;
+import com.javarush.ivannikov.model.IslandSettings;
+import com.javarush.ivannikov.model.PopulationBackend;
+import com.javarush.ivannikov.model.PopulationCensus;
+import com.javarush.ivannikov.model.StepListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Регион распределённого острова: полоса строк в отдельном процессе
+ * <p>
+ * Регион — обычный Island высотой в свою полосу. Животное, которое уходит за верхний
+ * или нижний край полосы, убирается из клетки и ждёт конца шага. После шага регион
+ * отправляет каждому соседу одним кадром всех ушедших к нему и ещё живых животных
+ * и ждёт такой же кадр от соседа; принятые животные заселяются в свои клетки до
+ * начала следующего шага. Обмен с соседями служит барьером: регион не начнёт шаг,
+ * пока соседи не закончили предыдущий. Животные взаимодействуют только внутри клетки,
+ * поэтому кроме переселенцев соседям ничего передавать не нужно.
+ * <p>
+ * Соединения — TCP на loopback: регион index слушает порт basePort + index,
+ * принимает соединение верхнего соседа и сам подключается к нижнему.
+ * При подключении стороны обмениваются рукопожатием (magic, число регионов, размер
+ * острова, номер региона, число видов). Запись переселенца, 16 байт:
+ * int строка острова, int столбец, byte вид, byte скорость, byte сытость, byte резерв, int вес.
+ * Переселенцы в кадре упорядочены, поэтому в детерминированном режиме прогон воспроизводим.
+ * Высота каждого региона должна быть не меньше максимальной скорости видов,
+ * чтобы животное за шаг пересекало не больше одной границы.
+ */
+public final class RegionNode implements IslandBoundary, StepListener, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(RegionNode.class);
+    private static final int HANDSHAKE_MAGIC = 0x4B484752;
+    private static final int HANDSHAKE_SIZE = 24;
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final long CONNECT_RETRY_MILLIS = 50;
+    private static final Comparator<Organism> FRAME_ORDER = Comparator
+            .comparingInt(Organism::getRow)
+            .thenComparingInt(Organism::getCol)
+            .thenComparingInt(organism -> organism.getSpecies().getId())
+            .thenComparingInt(Organism::getSatiety)
+            .thenComparingInt(Organism::getSpeed)
+            .thenComparingInt(Organism::getWeight);
+
+    private final RegionLayout layout;
+    private final int index;
+    private final int startRow;
+    private final Island island;
+    private final SpeciesRegistry registry;
+    private final RegionLink up;
+    private final RegionLink down;
+    private final Queue<Organism> leavingUp = new ConcurrentLinkedQueue<>();
+    private final Queue<Organism> leavingDown = new ConcurrentLinkedQueue<>();
+    private final List<Organism> batch = new ArrayList<>();
+    private ByteBuffer frame = ByteBuffer.allocate(RegionLink.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long emigrants;
+    private long immigrants;
+    private long crowded;
+
+    /**
+     * Создаёт остров региона и соединяется с соседями; возвращается, когда оба соседа подключены
+     *
+     * @param settings параметры острова региона; поддерживается только хранилище OBJECTS
+     */
+    public RegionNode(RegionLayout layout, int index, int basePort, IslandSettings settings) {
+        if (index < 0 || index >= layout.getParts()) {
+            throw new IllegalArgumentException("Номер региона вне диапазона 0–" + (layout.getParts() - 1));
+        }
+        if (settings.getBackend() != PopulationBackend.OBJECTS) {
+            throw new IllegalArgumentException("Распределённый остров поддерживает только хранилище OBJECTS");
+        }
+        this.registry = settings.getSpeciesRegistry();
+        if (layout.getParts() > 1 && layout.minHeight() < registry.getMaxSpeed()) {
+            throw new IllegalArgumentException("Высота региона должна быть не меньше максимальной скорости видов ("
+                    + registry.getMaxSpeed() + ")");
+        }
+        this.layout = layout;
+        this.index = index;
+        this.startRow = layout.startRow(index);
+        this.island = new Island(layout.height(index), layout.getCols(), settings);
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), basePort + index));
+            this.down = index + 1 < layout.getParts() ? connect(basePort + index + 1, index + 1) : null;
+            this.up = index > 0 ? accept(server, index - 1) : null;
+        } catch (IOException e) {
+            island.shutdownExecutor();
+            throw new UncheckedIOException("Регион " + index + " не смог соединиться с соседями", e);
+        }
+        island.setBoundary(this);
+        island.addStepListener(this);
+        LOG.info("Регион {} из {}: строки {}–{}, соседи сверху {}, снизу {}", index, layout.getParts(),
+                startRow, layout.endRow(index) - 1, up != null ? "есть" : "нет", down != null ? "есть" : "нет");
+    }
+
+    private RegionLink connect(int port, int neighbour) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                return handshake(channel, neighbour);
+            } catch (ConnectException e) {
+                channel.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Подключение к региону " + neighbour + " прервано", interrupted);
+                }
+            }
+        }
+    }
+
+    private RegionLink accept(ServerSocketChannel server, int neighbour) throws IOException {
+        return handshake(server.accept(), neighbour);
+    }
+
+    private RegionLink handshake(SocketChannel channel, int neighbour) throws IOException {
+        channel.socket().setTcpNoDelay(true);
+        ByteBuffer out = ByteBuffer.allocate(HANDSHAKE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(HANDSHAKE_MAGIC).putInt(layout.getParts()).putInt(layout.getRows())
+                .putInt(layout.getCols()).putInt(index).putInt(registry.size()).flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        ByteBuffer in = ByteBuffer.allocate(HANDSHAKE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Регион " + neighbour + " закрыл соединение при рукопожатии");
+            }
+        }
+        in.flip();
+        if (in.getInt() != HANDSHAKE_MAGIC || in.getInt() != layout.getParts() || in.getInt() != layout.getRows()
+                || in.getInt() != layout.getCols() || in.getInt() != neighbour || in.getInt() != registry.size()) {
+            channel.close();
+            throw new IOException("Регион " + neighbour + " запущен с другими параметрами острова");
+        }
+        return new RegionLink(channel, String.valueOf(neighbour));
+    }
+
+    public Island getIsland() {
+        return island;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Первая строка региона в координатах всего острова
+     */
+    public int getStartRow() {
+        return startRow;
+    }
+
+    /**
+     * Сколько животных ушло к соседям и пришло от них за всё время
+     */
+    public long getEmigrants() {
+        return emigrants;
+    }
+
+    public long getImmigrants() {
+        return immigrants;
+    }
+
+    /**
+     * Сколько пришедших животных не поместилось в заполненные клетки и погибло на границе
+     */
+    public long getCrowded() {
+        return crowded;
+    }
+
+    @Override
+    public boolean accepts(int newRow, int newCol) {
+        if (newCol < 0 || newCol >= layout.getCols()) {
+            return false;
+        }
+        return newRow < 0 ? up != null : down != null;
+    }
+
+    /**
+     * Запоминает ушедшее животное; его координаты до отправки хранят клетку назначения
+     * в координатах региона
+     */
+    @Override
+    public void leave(Organism organism, int newRow, int newCol) {
+        organism.setCoordinates(newRow, newCol);
+        (newRow < 0 ? leavingUp : leavingDown).add(organism);
+    }
+
+    /**
+     * Обмен переселенцами после шага
+     */
+    @Override
+    public void onStepCompleted(Island island) {
+        long step = island.getStep();
+        try {
+            if (up != null) {
+                up.send(encode(leavingUp, step));
+            }
+            if (down != null) {
+                down.send(encode(leavingDown, step));
+            }
+            if (up != null) {
+                settle(up.receive(), step);
+            }
+            if (down != null) {
+                settle(down.receive(), step);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Обмен с соседями на шаге " + step + " не удался", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Обмен с соседями прерван", e);
+        }
+    }
+
+    /**
+     * Собирает кадр из живых переселенцев; погибшие по дороге уже учтены в счётчиках как смерти,
+     * живые списываются со счётчиков острова здесь
+     */
+    private ByteBuffer encode(Queue<Organism> leaving, long step) {
+        batch.clear();
+        for (Organism organism = leaving.poll(); organism != null; organism = leaving.poll()) {
+            if (organism.isStatus()) {
+                batch.add(organism);
+            }
+        }
+        batch.sort(FRAME_ORDER);
+        int size = RegionLink.HEADER_SIZE + batch.size() * RegionLink.RECORD_SIZE;
+        if (frame.capacity() < size) {
+            frame = ByteBuffer.allocate(Math.max(size, frame.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        frame.clear();
+        frame.putInt(RegionLink.FRAME_MAGIC).putInt(batch.size()).putLong(step);
+        PopulationCensus census = island.getCensus();
+        for (Organism organism : batch) {
+            frame.putInt(startRow + organism.getRow());
+            frame.putInt(organism.getCol());
+            frame.put((byte) organism.getSpecies().getId());
+            frame.put((byte) organism.getSpeed());
+            frame.put((byte) organism.getSatiety());
+            frame.put((byte) 0);
+            frame.putInt(organism.getWeight());
+            census.changed(organism.getSpecies(), -1);
+        }
+        emigrants += batch.size();
+        batch.clear();
+        return frame.flip();
+    }
+
+    private void settle(ByteBuffer received, long step) throws IOException {
+        if (received.getLong(8) != step) {
+            throw new IOException("Сосед прислал кадр шага " + received.getLong(8) + " вместо " + step);
+        }
+        int count = received.getInt(4);
+        for (int i = 0; i < count; i++) {
+            int row = received.getInt() - startRow;
+            int col = received.getInt();
+            int id = received.get();
+            int speed = received.get();
+            int satiety = received.get();
+            received.get();
+            int weight = received.getInt();
+            if (row < 0 || row >= island.getRows() || col < 0 || col >= island.getCols()
+                    || id < 0 || id >= registry.size()) {
+                throw new IOException("Сосед прислал животное вне региона " + index);
+            }
+            Species species = registry.get(id);
+            Organism organism = species.create();
+            organism.setSpeed(speed);
+            organism.setSatiety(satiety);
+            organism.setWeight(weight);
+            if (!island.addOrganism(organism, row, col)) {
+                crowded++;
+            }
+        }
+        immigrants += count;
+    }
+
+    /**
+     * Закрывает соединения и пул потоков острова; соседи получат ошибку на следующем обмене
+     */
+    @Override
+    public void close() {
+        island.removeStepListener(this);
+        island.setBoundary(null);
+        island.shutdownExecutor();
+        for (RegionLink link : new RegionLink[]{up, down}) {
+            if (link != null) {
+                try {
+                    link.close();
+                } catch (IOException e) {
+                    LOG.warn("Не удалось закрыть соединение региона {}", index, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Запускает один регион: index parts rows cols steps basePort [seed]
+     * Выводит численность региона после каждого шага строкой "region index step alive".
+     */
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.err.println("Использование: RegionNode index parts rows cols steps basePort [seed]");
+            System.exit(2);
+        }
+        int index = Integer.parseInt(args[0]);
+        RegionLayout layout = new RegionLayout(Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        int steps = Integer.parseInt(args[4]);
+        int basePort = Integer.parseInt(args[5]);
+        IslandSettings settings = new IslandSettings();
+        if (args.length > 6) {
+            settings.setSeed(Long.parseLong(args[6]) + index);
+        }
+        try (RegionNode node = new RegionNode(layout, index, basePort, settings)) {
+            Island island = node.getIsland();
+            island.populate();
+            System.out.println("region " + index + " step 0 alive " + island.countAliveOrganisms());
+            for (int i = 0; i < steps; i++) {
+                island.simulateStep();
+                System.out.println("region " + index + " step " + island.getStep()
+                        + " alive " + island.countAliveOrganisms());
+            }
+            LOG.info("Регион {} завершён: ушло {}, пришло {}, не поместилось {}", index,
+                    node.getEmigrants(), node.getImmigrants(), node.getCrowded());
+        }
+    }
+}
@@ -1,35 +1,37 @@
 package com.javarush.ivannikov.entity;
 
+import com.javarush.ivannikov.event.SimulationEvents;
 import com.javarush.ivannikov.model.Location;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
-public abstract class Herbivore extends Organism {
-    private static final Logger LOG = LoggerFactory.getLogger(Herbivore.class);
-
-    protected Herbivore(String name, int weight, int speed, int maxSpeed, int maxSatiety, int successfulEating, int satiety, boolean status) {
-        super(OrganismType.HERBIVORE, name, weight, speed, maxSpeed, maxSatiety, successfulEating, satiety, status);
+public class Herbivore extends Organism {
+    public Herbivore(Species species) {
+        super(species);
+        if (species.getType() != OrganismType.HERBIVORE) {
+            throw new IllegalArgumentException("Вид " + species.getKey() + " не является травоядным");
+        }
     }
 
+    /**
+     * Травоядное ест траву клетки; если у вида задан diet (всеядное), сначала
+     * охотится на свою добычу и ест траву, только когда охота не удалась
+     */
     @Override
     public void eat(Location location) {
         int satiety = this.getSatiety();
-        Grass grass = location.getGrass();
-        int chance = ThreadLocalRandom.current().nextInt(0, this.getSuccessfulEating() + 1);
-        if (!Objects.isNull(grass) && chance % 2 == 0) {
+        RandomGenerator random = location.getRandom();
+        if (getSpecies().prey().length > 0 && hunt(location, random)) {
+            this.setSatiety(Math.min(satiety + 1, this.getMaxSatiety()));
+        } else if (random.nextInt(0, this.getSuccessfulEating() + 1) % 2 == 0 && location.graze()) {
             this.setSatiety(Math.min(satiety + 1, this.getMaxSatiety()));
-            LOG.info("Животное {} поело траву в локации {}, {}",
-                    this.getName(), this.getRow(), this.getCol());
+            SimulationEvents.meal(getSpecies().getId(), -1, this.getRow(), this.getCol());
         } else {
             this.setSatiety(satiety - 2);
-            LOG.info("Животное {} не поело траву в локации {}, {}",
-                    this.getName(), this.getRow(), this.getCol());
+            SimulationEvents.missedMeal(getSpecies().getId(), this.getRow(), this.getCol());
         }
         int maxSatiety = this.getMaxSatiety();
         changeSpeed(satiety, maxSatiety);
-        changeStatus(satiety);
+        changeStatus(location, satiety);
     }
 }
@@ -1,26 +1,31 @@
 package com.javarush.ivannikov.entity;
 
+import com.javarush.ivannikov.event.SimulationEvents;
+import com.javarush.ivannikov.metrics.StepPhase;
+import com.javarush.ivannikov.metrics.StepProfiler;
+import com.javarush.ivannikov.model.DensityField;
 import com.javarush.ivannikov.model.Island;
 import com.javarush.ivannikov.model.Location;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.random.RandomGenerator;
 
 public abstract class Organism {
-private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
+    private static final VarHandle STATUS;
 
-    /**
-     * Определяет тип животного
-     * HERBIVORE - травоядное
-     * PREDATOR - хищник
-     */
-    private final OrganismType type;
+    static {
+        try {
+            STATUS = MethodHandles.lookup().findVarHandle(Organism.class, "status", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /**
-     * Название животного
+     * Вид животного: название, тип и неизменяемые параметры
      */
-    private final String name;
+    private final Species species;
 
     /**
      * Вес животного (в кг)
@@ -37,27 +42,6 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
      */
     private int speed;
 
-    /**
-     * Максимальная скорость животного
-     * Диапазон: от 0 до 10
-     * Показывает, на сколько клеток может переместиться за цикл
-     */
-    private final int maxSpeed;
-
-    /**
-     * Максимальная сытость животного
-     * Диапазон: от 1 до 10
-     * Характеризует, на сколько животное может быть сытым
-     */
-    private final int maxSatiety;
-
-    /**
-     * Шанс успешного поедания (для хищников и травоядных)
-     * Диапазон: от 0 до 5
-     * Определяет вероятность успеха поедания пищи
-     */
-    private final int successfulEating;
-
     /**
      * Текущий уровень сытости животного
      * Диапазон: от 0 (голоден) до maxSatiety
@@ -71,76 +55,62 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
      * Используется для фильтрации животных в симуляции
      */
     private boolean status;
+
     protected int row;
     protected int col;
 
-    protected Organism(OrganismType type, String name, int weight,
-                       int speed, int maxSpeed, int maxSatiety,
-                       int successfulEating, int satiety, boolean status) {
-        if (type == null) {
-            throw new IllegalArgumentException("Тип животного не может быть пустым");
-        }
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Имя животного не может быть пустым");
-        }
-        if (weight <= 0) {
-            throw new IllegalArgumentException("Вес животного должен быть положительным");
-        }
-        if (speed < 0 || speed > 5) {
-            throw new IllegalArgumentException("Скорость животного должна быть в диапазоне 0–5");
-        }
-        if (maxSatiety < 1 || maxSatiety > 10) {
-            throw new IllegalArgumentException("Максимальная сытость должна быть в диапазоне 1–10");
-        }
-        if (successfulEating < 0 || successfulEating > 5) {
-            throw new IllegalArgumentException("Шанс успешного поедания должен быть в диапазоне 0–5");
+    /**
+     * Локация, в индексах которой сейчас находится животное
+     * null — животное в пути (очередь перемещений) или вне острова.
+     * Поля home и slots ведёт только Location.
+     */
+    private volatile Location home;
+    private final int[] slots = {-1, -1, -1};
+
+    protected Organism(Species species) {
+        if (species == null) {
+            throw new IllegalArgumentException("Вид животного не может быть пустым");
         }
-        if (satiety < 0 || satiety > maxSatiety) {
-            throw new IllegalArgumentException("Сытость должна быть в диапазоне от 0 до maxSatiety");
+        this.species = species;
+        reset();
+    }
+
+    /**
+     * Возвращает погибшее животное в состояние новорождённого
+     * Используется пулом OrganismPool вместо создания нового объекта
+     */
+    public final void reset() {
+        this.weight = species.getWeight();
+        this.speed = species.getSpeed();
+        this.satiety = species.getSatiety();
+        this.status = true;
+        this.row = 0;
+        this.col = 0;
+        this.home = null;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = -1;
         }
-        this.type = type;
-        this.name = name;
-        this.weight = weight;
-        this.speed = speed;
-        this.maxSpeed = maxSpeed;
-        this.maxSatiety = maxSatiety;
-        this.successfulEating = successfulEating;
-        this.satiety = satiety;
-        this.status = status;
     }
 
     /**
      * Перемещает животное на новую локацию в пределах скорости.
      * Вызывается один раз за цикл симуляции.
      * Реализация выбирает направление случайно или по логике поиска пищи.
+     * Если на острове включён слой плотности (DensityField), смещение направляется
+     * к добыче или траве в радиусе чувствительности и не выходит за край острова.
      */
     public void move(Island island, Location location) {
-        int row = location.getRow();
-        int col = location.getCol();
-        int deltaRow = ThreadLocalRandom.current().nextInt(-getSpeed(), getSpeed() + 1);
-        int deltaCol = ThreadLocalRandom.current().nextInt(-getSpeed(), getSpeed() + 1);
-        int newRow = row + deltaRow;
-        int newCol = col + deltaCol;
-        if (newRow < 0 || newRow >= island.getRows() || newCol < 0 || newCol >= island.getCols()) {
-            return;
+        RandomGenerator random = location.getRandom();
+        int deltaRow = random.nextInt(-getSpeed(), getSpeed() + 1);
+        int deltaCol = random.nextInt(-getSpeed(), getSpeed() + 1);
+        DensityField field = island.getDensityField();
+        if (field != null) {
+            int row = location.getRow();
+            int col = location.getCol();
+            deltaRow = field.steerRow(species.getId(), row, col, deltaRow);
+            deltaCol = field.steerCol(species.getId(), row, col, deltaCol);
         }
-        Location newLocation = island.getLocation(newRow, newCol);
-        Location firstLocation, secondLocation;
-       if (newRow < row || (newRow == row && newCol < col)) {
-           firstLocation = newLocation;
-           secondLocation = location;
-       }  else {
-           firstLocation = location;
-           secondLocation = newLocation;
-       }
-       firstLocation.withLock(() -> {
-           secondLocation.withLock(() -> {
-               location.deleteOrganism(this);
-               newLocation.addOrganism(this, newRow, newCol);
-               LOG.info("Животное {} перемещается из координат {}, {} на новые координаты {}, {}",
-                       this.getName(), row, col, newRow, newCol);
-           });
-       });
+        island.moveOrganism(this, location, location.getRow() + deltaRow, location.getCol() + deltaCol);
     }
 
     /**
@@ -158,13 +128,36 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
      * @param location клетка острова в которой происходит действие
      */
     public void liveOneCycle(Island island, Location location) {
+        long started = StepProfiler.start();
         move(island, location);
+        long moved = StepProfiler.phase(StepPhase.MOVE, started);
         eat(location);
+        StepProfiler.phase(StepPhase.EAT, moved);
     }
 
-    protected void changeStatus(int satiety) {
+    /**
+     * Встречает случайную особь из видов добычи (Species.getPrey) и съедает её с вероятностью
+     * из матрицы поедания; себя животное не выбирает, даже если ест особей своего вида
+     *
+     * @return true, если добыча съедена
+     */
+    protected boolean hunt(Location location, RandomGenerator random) {
+        Organism victim = location.pickRandomAlive(species.prey(), this, random);
+        if (victim == null) {
+            return false;
+        }
+        int chance = species.getEatChance(victim.getSpecies().getId());
+        if (chance < 100 && random.nextInt(100) >= chance) {
+            return false;
+        }
+        location.markDead(victim);
+        SimulationEvents.meal(species.getId(), victim.getSpecies().getId(), this.getRow(), this.getCol());
+        return true;
+    }
+
+    protected void changeStatus(Location location, int satiety) {
         if (satiety <= 0) {
-            this.setStatus(false);
+            location.markDead(this);
         }
     }
 
@@ -177,14 +170,23 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
         }
     }
 
-    public abstract Organism createOffspring();
+    public Organism createOffspring() {
+        return species.create();
+    }
+
+    /**
+     * Вид животного, к которому относится особь
+     */
+    public Species getSpecies() {
+        return species;
+    }
 
     public OrganismType getType() {
-        return type;
+        return species.getType();
     }
 
     public String getName() {
-        return name;
+        return species.getName();
     }
 
     public int getWeight() {
@@ -204,15 +206,15 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
     }
 
     public int getMaxSpeed() {
-        return maxSpeed;
+        return species.getMaxSpeed();
     }
 
     public int getMaxSatiety() {
-        return maxSatiety;
+        return species.getMaxSatiety();
     }
 
     public int getSuccessfulEating() {
-        return successfulEating;
+        return species.getSuccessfulEating();
     }
 
     public int getSatiety() {
@@ -231,6 +233,35 @@ private static final Logger LOG = LoggerFactory.getLogger(Organism.class);
         this.status = status;
     }
 
+    /**
+     * Атомарно переводит живое животное в мёртвое
+     * При гонке (хищник и голод в разных потоках) true вернёт только один вызов
+     *
+     * @return true, если именно этот вызов убил животное
+     */
+    public boolean die() {
+        return STATUS.compareAndSet(this, true, false);
+    }
+
+    public Location getHome() {
+        return home;
+    }
+
+    public void setHome(Location home) {
+        this.home = home;
+    }
+
+    /**
+     * Позиция животного в одном из индексов локации (общий, по типу, по виду)
+     */
+    public int getSlot(int index) {
+        return slots[index];
+    }
+
+    public void setSlot(int index, int slot) {
+        slots[index] = slot;
+    }
+
     public void setCoordinates(int row, int col) {
         this.row = row;
         this.col = col;
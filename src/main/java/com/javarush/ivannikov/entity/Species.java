@@ -0,0 +1,209 @@
+package com.javarush.ivannikov.entity;
+
+import java.util.stream.IntStream;
+
+/**
+ * Вид животного острова: параметры, общие для всех особей вида
+ * Виды описываются в файле настроек и загружаются SpeciesRegistry, поэтому для нового
+ * вида не нужен новый класс. Номер вида (id) плотный — от 0 до size()-1 в своём реестре —
+ * и используется как индекс в примитивных массивах (компактное хранилище, счётчики),
+ * а горячие циклы сравнивают номера вместо имён.
+ */
+public final class Species {
+    /**
+     * Номер вида в реестре
+     */
+    private final int id;
+
+    /**
+     * Ключ вида в файле настроек (WOLF, RABBIT, ...)
+     */
+    private final String key;
+
+    /**
+     * Название животного
+     */
+    private final String name;
+
+    /**
+     * Определяет тип животного
+     * HERBIVORE - травоядное
+     * PREDATOR - хищник
+     */
+    private final OrganismType type;
+
+    /**
+     * Начальный вес особи (в кг)
+     */
+    private final int weight;
+
+    /**
+     * Начальная скорость особи
+     * Диапазон: от 0 до 5
+     */
+    private final int speed;
+
+    /**
+     * Максимальная скорость особи
+     * Диапазон: от 0 до 10
+     */
+    private final int maxSpeed;
+
+    /**
+     * Максимальная сытость особи
+     * Диапазон: от 1 до 10
+     */
+    private final int maxSatiety;
+
+    /**
+     * Шанс успешного поедания
+     * Диапазон: от 0 до 5
+     */
+    private final int successfulEating;
+
+    /**
+     * Начальная сытость особи
+     * Диапазон: от 0 до maxSatiety
+     */
+    private final int satiety;
+
+    /**
+     * Сколько особей вида помещается в одной клетке
+     */
+    private final int maxPerCell;
+
+    /**
+     * Номера видов, которых ест хищник, по возрастанию
+     */
+    private final int[] prey;
+
+    /**
+     * Вероятность (в процентах) съесть особь вида, индекс — номер вида добычи
+     */
+    private final int[] eatChance;
+
+    Species(int id, String key, String name, OrganismType type, int weight,
+            int speed, int maxSpeed, int maxSatiety, int successfulEating,
+            int satiety, int maxPerCell, int[] eatChance) {
+        if (type == null) {
+            throw new IllegalArgumentException("Тип животного не может быть пустым");
+        }
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Имя животного не может быть пустым");
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Вес животного должен быть положительным");
+        }
+        if (speed < 0 || speed > 5) {
+            throw new IllegalArgumentException("Скорость животного должна быть в диапазоне 0–5");
+        }
+        if (maxSpeed < 0 || maxSpeed > 10) {
+            throw new IllegalArgumentException("Максимальная скорость животного должна быть в диапазоне 0–10");
+        }
+        if (maxSatiety < 1 || maxSatiety > 10) {
+            throw new IllegalArgumentException("Максимальная сытость должна быть в диапазоне 1–10");
+        }
+        if (successfulEating < 0 || successfulEating > 5) {
+            throw new IllegalArgumentException("Шанс успешного поедания должен быть в диапазоне 0–5");
+        }
+        if (satiety < 0 || satiety > maxSatiety) {
+            throw new IllegalArgumentException("Сытость должна быть в диапазоне от 0 до maxSatiety");
+        }
+        if (maxPerCell <= 0) {
+            throw new IllegalArgumentException("Вместимость клетки должна быть положительной");
+        }
+        this.id = id;
+        this.key = key;
+        this.name = name;
+        this.type = type;
+        this.weight = weight;
+        this.speed = speed;
+        this.maxSpeed = maxSpeed;
+        this.maxSatiety = maxSatiety;
+        this.successfulEating = successfulEating;
+        this.satiety = satiety;
+        this.maxPerCell = maxPerCell;
+        this.eatChance = eatChance.clone();
+        this.prey = IntStream.range(0, eatChance.length)
+                .filter(i -> eatChance[i] > 0)
+                .toArray();
+    }
+
+    /**
+     * Создаёт новую особь данного вида с начальными параметрами
+     */
+    public Organism create() {
+        return type == OrganismType.PREDATOR ? new Predator(this) : new Herbivore(this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OrganismType getType() {
+        return type;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getSpeed() {
+        return speed;
+    }
+
+    public int getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public int getMaxSatiety() {
+        return maxSatiety;
+    }
+
+    public int getSuccessfulEating() {
+        return successfulEating;
+    }
+
+    public int getSatiety() {
+        return satiety;
+    }
+
+    public int getMaxPerCell() {
+        return maxPerCell;
+    }
+
+    /**
+     * Номера видов добычи; массив общий, изменять его нельзя
+     */
+    int[] prey() {
+        return prey;
+    }
+
+    public int[] getPrey() {
+        return prey.clone();
+    }
+
+    /**
+     * Вероятность (в процентах) съесть особь вида other при встрече
+     */
+    public int getEatChance(Species other) {
+        return other.id < eatChance.length ? eatChance[other.id] : 0;
+    }
+
+    public int getEatChance(int otherId) {
+        return eatChance[otherId];
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
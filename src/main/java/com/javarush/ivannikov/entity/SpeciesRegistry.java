@@ -0,0 +1,250 @@
+package com.javarush.ivannikov.entity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.random.RandomGenerator;
+
+/**
+ * Таблица видов животных, загружаемая из файла настроек
+ * <p>
+ * Формат — properties в UTF-8. Ключ species перечисляет виды через запятую, порядок
+ * задаёт номера видов. Параметры вида записываются как ВИД.параметр:
+ * <pre>
+ * species = WOLF, RABBIT
+ * WOLF.name = Волк
+ * WOLF.type = PREDATOR
+ * WOLF.weight = 20
+ * WOLF.speed = 3
+ * WOLF.maxSpeed = 10
+ * WOLF.maxSatiety = 10
+ * WOLF.successfulEating = 4
+ * WOLF.satiety = 3
+ * WOLF.maxPerCell = 30
+ * WOLF.diet = RABBIT:100
+ * </pre>
+ * diet — матрица поедания: кого и с какой вероятностью (в процентах) ест вид при встрече.
+ * Добычей может быть любой вид, в том числе хищник и свой собственный вид (охотник не
+ * выбирает сам себя). Хищник питается только добычей; травоядное с diet — всеядное:
+ * сначала охотится и ест траву, только если охота не удалась.
+ * Реестр по умолчанию читается из файла, указанного свойством island.species,
+ * а если оно не задано — из species.properties на classpath.
+ */
+public final class SpeciesRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(SpeciesRegistry.class);
+    private static final String DEFAULT_RESOURCE = "/species.properties";
+
+    /**
+     * Номер вида пишется в события и снимки одним знаковым байтом
+     */
+    public static final int MAX_SPECIES = Byte.MAX_VALUE;
+
+    private final List<Species> species;
+    private final Map<String, Species> byKey = new HashMap<>();
+    private final List<List<Species>> byType = new ArrayList<>();
+    private final int maxSpeed;
+
+    private SpeciesRegistry(List<Species> species) {
+        this.species = Collections.unmodifiableList(species);
+        for (int i = 0; i < OrganismType.values().length; i++) {
+            byType.add(new ArrayList<>());
+        }
+        int speed = 0;
+        for (Species s : species) {
+            byKey.put(s.getKey(), s);
+            byType.get(s.getType().ordinal()).add(s);
+            speed = Math.max(speed, s.getMaxSpeed());
+        }
+        for (int i = 0; i < byType.size(); i++) {
+            byType.set(i, Collections.unmodifiableList(byType.get(i)));
+        }
+        this.maxSpeed = speed;
+    }
+
+    /**
+     * Реестр по умолчанию; загружается при первом обращении
+     */
+    public static SpeciesRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Загружает виды из файла настроек
+     */
+    public static SpeciesRegistry load(Path path) {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader, path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать файл видов " + path, e);
+        }
+    }
+
+    private static SpeciesRegistry load(Reader reader, String source) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        SpeciesRegistry registry = of(properties);
+        LOG.info("Загружено видов из {}: {}", source, registry.size());
+        return registry;
+    }
+
+    /**
+     * Строит реестр из уже прочитанных настроек
+     */
+    public static SpeciesRegistry of(Properties properties) {
+        String list = properties.getProperty("species");
+        if (list == null || list.isBlank()) {
+            throw new IllegalArgumentException("В настройках видов нет списка species");
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : list.split(",")) {
+            String trimmed = key.trim();
+            if (trimmed.isEmpty() || keys.contains(trimmed)) {
+                throw new IllegalArgumentException("Пустой или повторяющийся вид в списке species: " + list);
+            }
+            keys.add(trimmed);
+        }
+        if (keys.size() > MAX_SPECIES) {
+            throw new IllegalArgumentException("Видов не может быть больше " + MAX_SPECIES);
+        }
+        List<Species> species = new ArrayList<>(keys.size());
+        for (int id = 0; id < keys.size(); id++) {
+            String key = keys.get(id);
+            try {
+                species.add(new Species(id, key,
+                        properties.getProperty(key + ".name", key),
+                        OrganismType.valueOf(require(properties, key, "type")),
+                        intValue(properties, key, "weight"),
+                        intValue(properties, key, "speed"),
+                        intValue(properties, key, "maxSpeed"),
+                        intValue(properties, key, "maxSatiety"),
+                        intValue(properties, key, "successfulEating"),
+                        intValue(properties, key, "satiety"),
+                        intValue(properties, key, "maxPerCell"),
+                        diet(properties, key, keys)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ошибка в описании вида " + key + ": " + e.getMessage(), e);
+            }
+        }
+        return new SpeciesRegistry(species);
+    }
+
+    private static int[] diet(Properties properties, String key, List<String> keys) {
+        int[] chance = new int[keys.size()];
+        String diet = properties.getProperty(key + ".diet");
+        if (diet == null || diet.isBlank()) {
+            return chance;
+        }
+        for (String entry : diet.split(",")) {
+            String[] parts = entry.split(":");
+            int prey = parts.length == 2 ? keys.indexOf(parts[0].trim()) : -1;
+            if (prey < 0) {
+                throw new IllegalArgumentException("Неизвестная добыча в diet: " + entry.trim());
+            }
+            int percent = Integer.parseInt(parts[1].trim());
+            if (percent < 0 || percent > 100) {
+                throw new IllegalArgumentException("Вероятность поедания должна быть в диапазоне 0–100");
+            }
+            chance[prey] = percent;
+        }
+        return chance;
+    }
+
+    private static String require(Properties properties, String key, String parameter) {
+        String value = properties.getProperty(key + "." + parameter);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Не задан параметр " + parameter);
+        }
+        return value.trim();
+    }
+
+    private static int intValue(Properties properties, String key, String parameter) {
+        return Integer.parseInt(require(properties, key, parameter));
+    }
+
+    public int size() {
+        return species.size();
+    }
+
+    /**
+     * Вид по номеру
+     */
+    public Species get(int id) {
+        return species.get(id);
+    }
+
+    /**
+     * Вид по ключу из файла настроек
+     */
+    public Species get(String key) {
+        Species found = byKey.get(key);
+        if (found == null) {
+            throw new IllegalArgumentException("Неизвестный вид: " + key);
+        }
+        return found;
+    }
+
+    /**
+     * Все виды в порядке номеров
+     */
+    public List<Species> all() {
+        return species;
+    }
+
+    /**
+     * Виды одного типа в порядке номеров
+     */
+    public List<Species> ofType(OrganismType type) {
+        return byType.get(type.ordinal());
+    }
+
+    /**
+     * Случайный вид заданного типа, все виды типа равновероятны
+     */
+    public Species random(OrganismType type, RandomGenerator random) {
+        List<Species> candidates = ofType(type);
+        if (candidates.isEmpty()) {
+            throw new IllegalStateException("В реестре нет видов типа " + type);
+        }
+        return candidates.get(random.nextInt(0, candidates.size()));
+    }
+
+    /**
+     * Наибольшая скорость среди всех видов
+     */
+    public int getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    private static final class DefaultHolder {
+        private static final SpeciesRegistry INSTANCE = loadDefault();
+
+        private static SpeciesRegistry loadDefault() {
+            String path = System.getProperty("island.species");
+            if (path != null) {
+                return load(Path.of(path));
+            }
+            try (InputStream in = SpeciesRegistry.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Не найден файл видов " + DEFAULT_RESOURCE);
+                }
+                return load(new InputStreamReader(in, StandardCharsets.UTF_8), DEFAULT_RESOURCE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать файл видов " + DEFAULT_RESOURCE, e);
+            }
+        }
+    }
+}
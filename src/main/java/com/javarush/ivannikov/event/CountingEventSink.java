@@ -0,0 +1,44 @@
+package com.javarush.ivannikov.event;
+
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Считает события по типу и виду животного
+ * Пишет только поток конвейера, читать счётчики можно из любого потока
+ */
+public class CountingEventSink implements EventSink {
+    private final int speciesCount;
+    private final AtomicLongArray counts;
+
+    public CountingEventSink() {
+        this(SpeciesRegistry.getDefault());
+    }
+
+    /**
+     * @param registry виды острова, номера которых приходят в событиях
+     */
+    public CountingEventSink(SpeciesRegistry registry) {
+        this.speciesCount = registry.size();
+        this.counts = new AtomicLongArray(EventType.values().length * speciesCount);
+    }
+
+    @Override
+    public void accept(EventType type, int species, int otherSpecies, int row, int col, int toRow, int toCol) {
+        counts.incrementAndGet(type.ordinal() * speciesCount + species);
+    }
+
+    public long getCount(EventType type, Species species) {
+        return counts.get(type.ordinal() * speciesCount + species.getId());
+    }
+
+    public long getCount(EventType type) {
+        long total = 0;
+        for (int s = 0; s < speciesCount; s++) {
+            total += counts.get(type.ordinal() * speciesCount + s);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,82 @@
+package com.javarush.ivannikov.event;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Кольцевой буфер событий одного потока-производителя
+ * Каждое событие упаковано в три long без создания объектов:
+ * [тип | вид | вид жертвы], [строка | столбец], [строка назначения | столбец назначения].
+ * Пишет только поток-владелец, читает только фоновый поток конвейера.
+ * Если буфер полон, событие отбрасывается, а счётчик dropped увеличивается —
+ * шаг симуляции никогда не ждёт потребителя.
+ */
+final class EventRing {
+    private static final int WORDS = 3;
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(EventRing.class, "head", long.class);
+            TAIL = lookup.findVarHandle(EventRing.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] buffer;
+    private final int mask;
+    private long head;
+    private long tail;
+    private volatile long dropped;
+    int sampleCounter;
+
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.buffer = new long[size * WORDS];
+        this.mask = size - 1;
+    }
+
+    boolean offer(long header, long from, long to) {
+        long t = tail;
+        if (t - (long) HEAD.getAcquire(this) > mask) {
+            dropped = dropped + 1;
+            return false;
+        }
+        int index = (int) (t & mask) * WORDS;
+        buffer[index] = header;
+        buffer[index + 1] = from;
+        buffer[index + 2] = to;
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    int drain(EventSink sink, EventType[] types) {
+        long h = head;
+        long t = (long) TAIL.getAcquire(this);
+        int count = 0;
+        for (; h < t; h++, count++) {
+            int index = (int) (h & mask) * WORDS;
+            long header = buffer[index];
+            long from = buffer[index + 1];
+            long to = buffer[index + 2];
+            try {
+                sink.accept(types[(int) (header >>> 16) & 0xFF],
+                        (byte) (header >>> 8), (byte) header,
+                        (int) (from >> 32), (int) from,
+                        (int) (to >> 32), (int) to);
+            } catch (RuntimeException e) {
+                HEAD.setRelease(this, h + 1);
+                throw e;
+            }
+        }
+        HEAD.setRelease(this, h);
+        return count;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,28 @@
+package com.javarush.ivannikov.event;
+
+/**
+ * Приёмник событий симуляции
+ * Вызывается только фоновым потоком конвейера событий, поэтому
+ * реализации не обязаны быть потокобезопасными.
+ */
+public interface EventSink extends AutoCloseable {
+
+    /**
+     * @param type         тип события
+     * @param species      номер вида животного (Species.getId())
+     * @param otherSpecies вид жертвы для MEAL хищника, иначе -1
+     * @param row          строка клетки события (для MOVE — исходная)
+     * @param col          столбец клетки события (для MOVE — исходный)
+     * @param toRow        строка клетки назначения для MOVE, иначе -1
+     * @param toCol        столбец клетки назначения для MOVE, иначе -1
+     */
+    void accept(EventType type, int species, int otherSpecies, int row, int col, int toRow, int toCol);
+
+    default void flush() {
+    }
+
+    @Override
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,19 @@
+package com.javarush.ivannikov.event;
+
+/**
+ * Тип события симуляции
+ * MOVE - животное перешло в другую клетку
+ * MEAL - животное поело (траву или другое животное)
+ * MISSED_MEAL - животное не смогло поесть
+ * BIRTH - в клетке родилось новое животное
+ */
+public enum EventType {
+    MOVE,
+    MEAL,
+    MISSED_MEAL,
+    BIRTH;
+
+    int mask() {
+        return 1 << ordinal();
+    }
+}
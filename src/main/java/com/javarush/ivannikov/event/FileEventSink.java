@@ -0,0 +1,58 @@
+package com.javarush.ivannikov.event;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Пишет события в двоичный файл записями фиксированной длины (19 байт):
+ * тип (byte), вид (byte), вид жертвы (byte), строка, столбец,
+ * строка назначения, столбец назначения (int, big-endian)
+ */
+public class FileEventSink implements EventSink {
+    private final DataOutputStream out;
+
+    public FileEventSink(Path path) {
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл событий " + path, e);
+        }
+    }
+
+    @Override
+    public void accept(EventType type, int species, int otherSpecies, int row, int col, int toRow, int toCol) {
+        try {
+            out.writeByte(type.ordinal());
+            out.writeByte(species);
+            out.writeByte(otherSpecies);
+            out.writeInt(row);
+            out.writeInt(col);
+            out.writeInt(toRow);
+            out.writeInt(toCol);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать событие", e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать события", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть файл событий", e);
+        }
+    }
+}
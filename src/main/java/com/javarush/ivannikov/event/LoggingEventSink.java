@@ -0,0 +1,57 @@
+package com.javarush.ivannikov.event;
+
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Пишет события в лог тем же текстом, что раньше писали сами животные
+ */
+public class LoggingEventSink implements EventSink {
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingEventSink.class);
+
+    private final String[] names;
+    private final OrganismType[] types;
+
+    public LoggingEventSink() {
+        this(SpeciesRegistry.getDefault());
+    }
+
+    /**
+     * @param registry виды острова, номера которых приходят в событиях
+     */
+    public LoggingEventSink(SpeciesRegistry registry) {
+        this.names = new String[registry.size()];
+        this.types = new OrganismType[registry.size()];
+        for (Species s : registry.all()) {
+            names[s.getId()] = s.getName();
+            types[s.getId()] = s.getType();
+        }
+    }
+
+    @Override
+    public void accept(EventType type, int species, int otherSpecies, int row, int col, int toRow, int toCol) {
+        switch (type) {
+            case MOVE -> LOG.info("Животное {} перемещается из координат {}, {} на новые координаты {}, {}",
+                    names[species], row, col, toRow, toCol);
+            case MEAL -> {
+                if (otherSpecies < 0) {
+                    LOG.info("Животное {} поело траву в локации {}, {}", names[species], row, col);
+                } else {
+                    LOG.info("Животное {} съело животное {} в локации {}, {}",
+                            names[species], names[otherSpecies], row, col);
+                }
+            }
+            case MISSED_MEAL -> {
+                if (types[species] == OrganismType.HERBIVORE) {
+                    LOG.info("Животное {} не поело траву в локации {}, {}", names[species], row, col);
+                } else {
+                    LOG.info("Животное {} не смогло поесть в локации {}, {}", names[species], row, col);
+                }
+            }
+            case BIRTH -> LOG.info("Родилось новое животное {} в локации {}, {}", names[species], row, col);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.javarush.ivannikov.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Конвейер событий симуляции
+ * Животные и остров сообщают о событиях через статические методы move/meal/missedMeal/birth.
+ * Событие упаковывается в примитивы и кладётся в кольцевой буфер текущего потока,
+ * а фоновый поток периодически выгружает все буферы в EventSink.
+ * Пока конвейер не запущен или тип события выключен, вызов стоит одно чтение volatile-поля.
+ * Ошибка приёмника не останавливает фоновый поток: событие, на котором она случилась,
+ * пропускается, первая ошибка пишется в лог, число ошибок — getSinkFailures().
+ */
+public final class SimulationEvents {
+    private static final Logger LOG = LoggerFactory.getLogger(SimulationEvents.class);
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final EventType[] TYPES = EventType.values();
+    private static final List<EventRing> RINGS = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<EventRing> RING = ThreadLocal.withInitial(() -> {
+        EventRing ring = new EventRing(DEFAULT_CAPACITY);
+        RINGS.add(ring);
+        return ring;
+    });
+    private static final Queue<EventRing> IDLE_RINGS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<EventRing> BORROWED = new ThreadLocal<>();
+
+    private static volatile int enabledMask;
+    private static volatile int sampleEvery = 1;
+    private static volatile boolean running;
+    private static volatile long sinkFailures;
+    private static Thread consumer;
+    private static EventSink sink;
+
+    private SimulationEvents() {
+    }
+
+    /**
+     * Запускает фоновый поток, выгружающий события в приёмник
+     *
+     * @param eventSink   приёмник событий
+     * @param sampleRate  в приёмник попадает каждое sampleRate-е событие каждого потока
+     * @param enabled     типы событий, которые нужно записывать
+     */
+    public static synchronized void start(EventSink eventSink, int sampleRate, Set<EventType> enabled) {
+        if (eventSink == null) {
+            throw new IllegalArgumentException("Приёмник событий не может быть пустым");
+        }
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Частота выборки должна быть положительной");
+        }
+        if (running) {
+            throw new IllegalStateException("Конвейер событий уже запущен");
+        }
+        sink = eventSink;
+        sampleEvery = sampleRate;
+        running = true;
+        consumer = new Thread(SimulationEvents::consume, "island-events");
+        consumer.setDaemon(true);
+        consumer.start();
+        setEnabled(enabled);
+    }
+
+    public static void start(EventSink eventSink) {
+        start(eventSink, 1, EnumSet.allOf(EventType.class));
+    }
+
+    /**
+     * Меняет набор записываемых типов событий на лету
+     */
+    public static void setEnabled(Set<EventType> enabled) {
+        int mask = 0;
+        for (EventType type : enabled) {
+            mask |= type.mask();
+        }
+        enabledMask = running ? mask : 0;
+    }
+
+    /**
+     * Останавливает конвейер, выгружает оставшиеся события и закрывает приёмник
+     */
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        enabledMask = 0;
+        running = false;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainSafely();
+        try {
+            sink.close();
+        } catch (RuntimeException e) {
+            LOG.error("Не удалось закрыть приёмник событий", e);
+        }
+        if (sinkFailures > 0) {
+            LOG.warn("Приёмник событий завершался с ошибкой {} раз", sinkFailures);
+        }
+        long dropped = getDropped();
+        if (dropped > 0) {
+            LOG.warn("Конвейер событий отбросил {} событий из-за переполнения буферов", dropped);
+        }
+        consumer = null;
+        sink = null;
+    }
+
+    /**
+     * Привязывает к текущему потоку свободный буфер событий; парный вызов — detach()
+     * Нужен короткоживущим (виртуальным) потокам: без него каждый такой поток
+     * заводил бы собственный буфер, который оставался бы в конвейере навсегда
+     */
+    public static void attach() {
+        if (!running) {
+            return;
+        }
+        EventRing ring = IDLE_RINGS.poll();
+        if (ring == null) {
+            ring = new EventRing(DEFAULT_CAPACITY);
+            RINGS.add(ring);
+        }
+        BORROWED.set(ring);
+        RING.set(ring);
+    }
+
+    public static void detach() {
+        EventRing ring = BORROWED.get();
+        if (ring == null) {
+            return;
+        }
+        BORROWED.remove();
+        RING.remove();
+        IDLE_RINGS.add(ring);
+    }
+
+    /**
+     * Число событий, отброшенных из-за переполнения буферов, за всё время работы
+     */
+    public static long getDropped() {
+        long dropped = 0;
+        for (EventRing ring : RINGS) {
+            dropped += ring.getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * Сколько раз приёмник событий завершился с ошибкой за всё время работы
+     */
+    public static long getSinkFailures() {
+        return sinkFailures;
+    }
+
+    public static void move(int species, int row, int col, int toRow, int toCol) {
+        emit(EventType.MOVE, species, -1, row, col, toRow, toCol);
+    }
+
+    public static void meal(int species, int victimSpecies, int row, int col) {
+        emit(EventType.MEAL, species, victimSpecies, row, col, -1, -1);
+    }
+
+    public static void missedMeal(int species, int row, int col) {
+        emit(EventType.MISSED_MEAL, species, -1, row, col, -1, -1);
+    }
+
+    public static void birth(int species, int row, int col) {
+        emit(EventType.BIRTH, species, -1, row, col, -1, -1);
+    }
+
+    private static void emit(EventType type, int species, int otherSpecies, int row, int col, int toRow, int toCol) {
+        if ((enabledMask & type.mask()) == 0) {
+            return;
+        }
+        EventRing ring = RING.get();
+        int every = sampleEvery;
+        if (every > 1 && ring.sampleCounter++ % every != 0) {
+            return;
+        }
+        long header = (long) type.ordinal() << 16 | (species & 0xFF) << 8 | (otherSpecies & 0xFF);
+        ring.offer(header,
+                (long) row << 32 | (col & 0xFFFFFFFFL),
+                (long) toRow << 32 | (toCol & 0xFFFFFFFFL));
+    }
+
+    private static void consume() {
+        while (running) {
+            if (drainSafely() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Выгружает буферы; ошибка приёмника считается и не прерывает выгрузку остальных событий
+     * Вызывается только фоновым потоком или из stop() после его завершения
+     */
+    private static int drainSafely() {
+        try {
+            return drainAll();
+        } catch (RuntimeException e) {
+            if (sinkFailures++ == 0) {
+                LOG.error("Приёмник событий завершился с ошибкой, событие пропущено", e);
+            } else {
+                LOG.debug("Приёмник событий снова завершился с ошибкой: {}", e.toString());
+            }
+            return 1;
+        }
+    }
+
+    private static int drainAll() {
+        int drained = 0;
+        for (EventRing ring : RINGS) {
+            drained += ring.drain(sink, TYPES);
+        }
+        if (drained > 0) {
+            sink.flush();
+        }
+        return drained;
+    }
+}
@@ -3,23 +3,29 @@ package com.javarush.ivannikov.factory;
 import com.javarush.ivannikov.entity.*;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class AnimalFactory {
     public static Predator randomPredator() {
-        int type = ThreadLocalRandom.current().nextInt(0, 2);
-        return switch (type) {
-            case 0 -> new Wolf();
-            case 1 -> new Bear();
-            default -> new Wolf();
-        };
+        return randomPredator(ThreadLocalRandom.current());
+    }
+
+    public static Predator randomPredator(RandomGenerator random) {
+        return (Predator) random(SpeciesRegistry.getDefault(), OrganismType.PREDATOR, random);
     }
 
     public static Herbivore randomHerbivore() {
-        int type = ThreadLocalRandom.current().nextInt(0, 2);
-        return switch (type) {
-            case 0 -> new Rabbit();
-            case 1 -> new Goat();
-            default -> new Rabbit();
-        };
+        return randomHerbivore(ThreadLocalRandom.current());
+    }
+
+    public static Herbivore randomHerbivore(RandomGenerator random) {
+        return (Herbivore) random(SpeciesRegistry.getDefault(), OrganismType.HERBIVORE, random);
+    }
+
+    /**
+     * Создаёт особь случайного вида заданного типа из реестра
+     */
+    public static Organism random(SpeciesRegistry registry, OrganismType type, RandomGenerator random) {
+        return registry.random(type, random).create();
     }
 }
@@ -0,0 +1,11 @@
+package com.javarush.ivannikov.metrics;
+
+/**
+ * Формат файла метрик
+ * BINARY - столбцовый двоичный формат с кадрами фиксированной длины (см. MetricsRecorder)
+ * CSV - текст, одна строка на плитку и вид; плитки без животных и событий пропускаются
+ */
+public enum MetricsFormat {
+    BINARY,
+    CSV,
+}
@@ -0,0 +1,55 @@
+package com.javarush.ivannikov.metrics;
+
+import com.javarush.ivannikov.entity.Organism;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Метрики одного шага по плиткам и видам; столбцы индексируются как tile * species + вид
+ * Кадры переиспользуются: после записи в файл кадр возвращается в очередь свободных.
+ * Сам кадр служит действием обхода локации, чтобы не создавать лямбду на каждую клетку.
+ */
+class MetricsFrame implements Consumer<Organism> {
+    final int[] counts;
+    final long[] satiety;
+    final int[] births;
+    final int[] deaths;
+    long step;
+    private final int species;
+    private int base;
+
+    MetricsFrame(int tiles, int species) {
+        this.species = species;
+        this.counts = new int[tiles * species];
+        this.satiety = new long[tiles * species];
+        this.births = new int[tiles * species];
+        this.deaths = new int[tiles * species];
+    }
+
+    void clear(long step) {
+        this.step = step;
+        Arrays.fill(counts, 0);
+        Arrays.fill(satiety, 0);
+        Arrays.fill(births, 0);
+        Arrays.fill(deaths, 0);
+    }
+
+    /**
+     * Выбирает плитку, в которую попадут животные следующего обхода
+     */
+    void selectTile(int tile) {
+        base = tile * species;
+    }
+
+    @Override
+    public void accept(Organism organism) {
+        int column = base + organism.getSpecies().getId();
+        counts[column]++;
+        satiety[column] += organism.getSatiety();
+    }
+
+    float meanSatiety(int column) {
+        return counts[column] == 0 ? 0f : (float) satiety[column] / counts[column];
+    }
+}
@@ -0,0 +1,360 @@
+package com.javarush.ivannikov.metrics;
+
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.StepListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Потоковая запись метрик популяции по шагам симуляции
+ * <p>
+ * После каждого recordEvery-го шага остров делится на плитки tileSize x tileSize, и по каждой
+ * плитке и виду собираются число животных, средняя сытость, рождения и смерти за этот шаг.
+ * Остальные шаги остров не обходит вовсе, поэтому на потоке симуляции запись стоит
+ * O(клеток) только раз в recordEvery шагов; рождения и смерти при recordEvery > 1 —
+ * выборка каждого recordEvery-го шага, а не сумма за период. Кадр передаётся фоновому
+ * потоку, который кодирует его и пишет в файл через FileChannel блоками по мегабайту.
+ * CSV пишется в UTF-8. Память не растёт с длиной прогона: в обороте не больше queueFrames
+ * кадров, и если запись отстаёт, шаг ждёт освобождения кадра, а не копит данные.
+ * <p>
+ * Двоичный формат (little-endian), файл только дописывается:
+ * <pre>
+ * заголовок, 32 байта:
+ *   int magic, int version, int rows, int cols, int tileSize, int tileRows, int tileCols, int species
+ * кадр, 8 + tiles * species * 16 байт:
+ *   long step,
+ *   int count[tiles * species], float meanSatiety[tiles * species],
+ *   int births[tiles * species], int deaths[tiles * species]
+ * </pre>
+ * Столбец плитки (tileRow, tileCol) и вида начинается с индекса
+ * (tileRow * tileCols + tileCol) * species + Species.getId(). Все кадры одной длины,
+ * поэтому k-й кадр лежит по смещению 32 + k * (8 + tiles * species * 16).
+ */
+public final class MetricsRecorder implements StepListener, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRecorder.class);
+    private static final int MAGIC = 0x544D5349;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int DEFAULT_TILE_SIZE = 16;
+    private static final int DEFAULT_QUEUE_FRAMES = 4;
+    private static final long POLL_MILLIS = 100;
+    private static final String CSV_HEADER = "step,tile_row,tile_col,species,count,mean_satiety,births,deaths\n";
+    private static final MetricsFrame POISON = new MetricsFrame(0, 0);
+
+    private final Island island;
+    private final List<Species> species;
+    private final MetricsFormat format;
+    private final int tileSize;
+    private final int tileRows;
+    private final int tileCols;
+    private final int recordEvery;
+    private final int queueFrames;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final StringBuilder line = new StringBuilder(64);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(64);
+    private final BlockingQueue<MetricsFrame> free;
+    private final BlockingQueue<MetricsFrame> filled;
+    private final Thread writer;
+    private int allocated;
+    private volatile long framesWritten;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    public MetricsRecorder(Island island, Path path) {
+        this(island, path, MetricsFormat.BINARY, DEFAULT_TILE_SIZE, 1, DEFAULT_QUEUE_FRAMES);
+    }
+
+    /**
+     * Открывает файл метрик и подписывается на шаги острова
+     *
+     * @param tileSize    сторона плитки в клетках; 1 — метрики по каждой клетке
+     * @param recordEvery записывать каждый recordEvery-й шаг; пропущенные шаги
+     *                    не обходятся, их рождения и смерти в файл не попадают
+     * @param queueFrames сколько кадров может ждать записи одновременно
+     */
+    public MetricsRecorder(Island island, Path path, MetricsFormat format,
+                           int tileSize, int recordEvery, int queueFrames) {
+        if (island == null || format == null) {
+            throw new IllegalArgumentException("Остров и формат метрик не могут быть пустыми");
+        }
+        if (!island.hasLocations()) {
+            throw new IllegalStateException("Метрики по клеткам доступны только для хранилища OBJECTS");
+        }
+        if (tileSize <= 0 || recordEvery <= 0 || queueFrames <= 0) {
+            throw new IllegalArgumentException("Размер плитки, период записи и длина очереди должны быть положительными");
+        }
+        this.island = island;
+        this.species = island.getSpeciesRegistry().all();
+        this.format = format;
+        this.tileSize = tileSize;
+        this.tileRows = (island.getRows() + tileSize - 1) / tileSize;
+        this.tileCols = (island.getCols() + tileSize - 1) / tileSize;
+        this.recordEvery = recordEvery;
+        this.queueFrames = queueFrames;
+        this.free = new ArrayBlockingQueue<>(queueFrames);
+        this.filled = new ArrayBlockingQueue<>(queueFrames + 1);
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл метрик " + path, e);
+        }
+        writeHeader();
+        this.writer = new Thread(this::writeFrames, "island-metrics");
+        writer.setDaemon(true);
+        writer.start();
+        island.addStepListener(this);
+        LOG.info("Запись метрик в {}: формат {}, плитки {}x{}, каждый {}-й шаг",
+                path, format, tileSize, tileSize, recordEvery);
+    }
+
+    @Override
+    public void onStepCompleted(Island island) {
+        if (failure != null) {
+            throw new IllegalStateException("Запись метрик прервана", failure);
+        }
+        long step = island.getStep();
+        if (step % recordEvery != 0) {
+            return;
+        }
+        try {
+            MetricsFrame frame = obtainFrame();
+            if (frame == null) {
+                throw new IllegalStateException("Запись метрик прервана", failure);
+            }
+            frame.clear(step);
+            scan(step - 1, frame);
+            filled.put(frame);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MetricsFrame obtainFrame() throws InterruptedException {
+        MetricsFrame frame = free.poll();
+        if (frame != null) {
+            return frame;
+        }
+        if (allocated < queueFrames) {
+            allocated++;
+            return new MetricsFrame(tileRows * tileCols, species.size());
+        }
+        while (failure == null) {
+            frame = free.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (frame != null) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Собирает в кадр численность, сытость, рождения и смерти шага completedStep
+     */
+    private void scan(long completedStep, MetricsFrame frame) {
+        island.forEachLocation(location -> {
+            int tile = (location.getRow() / tileSize) * tileCols + location.getCol() / tileSize;
+            int base = tile * species.size();
+            for (Species s : species) {
+                frame.births[base + s.getId()] += location.getBirths(s, completedStep);
+                frame.deaths[base + s.getId()] += location.getDeaths(s, completedStep);
+            }
+            if (location.size() > 0) {
+                frame.selectTile(tile);
+                location.forEach(frame);
+            }
+        });
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                MetricsFrame frame = filled.take();
+                if (frame == POISON) {
+                    break;
+                }
+                if (format == MetricsFormat.BINARY) {
+                    encodeBinary(frame);
+                } else {
+                    encodeCsv(frame);
+                }
+                framesWritten++;
+                free.offer(frame);
+            }
+            drain();
+        } catch (IOException e) {
+            failure = e;
+            LOG.error("Не удалось записать метрики", e);
+        } catch (InterruptedException e) {
+            failure = e;
+        }
+    }
+
+    private void writeHeader() {
+        if (format == MetricsFormat.CSV) {
+            buffer.put(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(island.getRows());
+        buffer.putInt(island.getCols());
+        buffer.putInt(tileSize);
+        buffer.putInt(tileRows);
+        buffer.putInt(tileCols);
+        buffer.putInt(species.size());
+    }
+
+    private void encodeBinary(MetricsFrame frame) throws IOException {
+        reserve(Long.BYTES);
+        buffer.putLong(frame.step);
+        int columns = frame.counts.length;
+        for (int i = 0; i < columns; i++) {
+            reserve(Integer.BYTES);
+            buffer.putInt(frame.counts[i]);
+        }
+        for (int i = 0; i < columns; i++) {
+            reserve(Float.BYTES);
+            buffer.putFloat(frame.meanSatiety(i));
+        }
+        for (int i = 0; i < columns; i++) {
+            reserve(Integer.BYTES);
+            buffer.putInt(frame.births[i]);
+        }
+        for (int i = 0; i < columns; i++) {
+            reserve(Integer.BYTES);
+            buffer.putInt(frame.deaths[i]);
+        }
+    }
+
+    private void encodeCsv(MetricsFrame frame) throws IOException {
+        for (int tile = 0; tile < tileRows * tileCols; tile++) {
+            for (Species s : species) {
+                int column = tile * species.size() + s.getId();
+                if (frame.counts[column] == 0 && frame.births[column] == 0 && frame.deaths[column] == 0) {
+                    continue;
+                }
+                line.setLength(0);
+                line.append(frame.step).append(',')
+                        .append(tile / tileCols).append(',')
+                        .append(tile % tileCols).append(',')
+                        .append(s.getKey()).append(',')
+                        .append(frame.counts[column]).append(',');
+                appendHundredths(frame.meanSatiety(column));
+                line.append(',')
+                        .append(frame.births[column]).append(',')
+                        .append(frame.deaths[column]).append('\n');
+                putLine();
+            }
+        }
+    }
+
+    /**
+     * Кодирует line в UTF-8 прямо в буфер записи: ключи видов не обязаны быть латиницей
+     */
+    private void putLine() throws IOException {
+        int length = line.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(length * 2);
+        }
+        chars.clear();
+        line.getChars(0, length, chars.array(), 0);
+        chars.limit(length);
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (result.isOverflow()) {
+            drain();
+            result = encoder.encode(chars, buffer, true);
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * Число с двумя знаками после точки; знак пишется отдельно от модуля, чтобы
+     * отрицательная сытость не давала записей вида "0.-50"
+     */
+    private void appendHundredths(float value) {
+        int hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            line.append('-');
+            hundredths = -hundredths;
+        }
+        line.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10) {
+            line.append('0');
+        }
+        line.append(hundredths % 100);
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Число кадров, уже переданных в файл
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Отписывается от острова, дописывает очередь кадров и закрывает файл
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        island.removeStepListener(this);
+        try {
+            filled.put(POISON);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть файл метрик", e);
+        }
+        if (failure instanceof IOException e) {
+            throw new UncheckedIOException("Не удалось записать метрики", e);
+        }
+        LOG.info("Запись метрик завершена, кадров: {}", framesWritten);
+    }
+}
@@ -0,0 +1,23 @@
+package com.javarush.ivannikov.metrics;
+
+/**
+ * Фазы шага симуляции, время которых замеряет StepProfiler
+ * MOVE, EAT, REPRODUCE - суммарное время всех потоков в перемещении, питании и размножении
+ * PROCESS - время параллельной обработки локаций по часам (от запуска задач до их завершения)
+ * MERGE - слияние очередей перемещения (MovementMode.BUFFERED)
+ * RECYCLE - возврат погибших животных в пул
+ * COUNT - подсчёт живых животных острова
+ * GROW - отрастание травы в слое растительности
+ * SENSE - построение слоя плотности для направленного движения
+ */
+public enum StepPhase {
+    MOVE,
+    EAT,
+    REPRODUCE,
+    PROCESS,
+    MERGE,
+    RECYCLE,
+    COUNT,
+    GROW,
+    SENSE,
+}
@@ -0,0 +1,390 @@
+package com.javarush.ivannikov.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Профилирование шага симуляции: время фаз, задержки задач пула, ожидание блокировок
+ * локаций и число животных, обработанных каждым потоком
+ * <p>
+ * Включается свойством {@code -Disland.profiling=true}. Флаг ENABLED — константа класса,
+ * поэтому при выключенном профилировании JIT выбрасывает замеры из горячего пути целиком:
+ * start() возвращает 0, а остальные методы завершаются на первой проверке.
+ * <p>
+ * Каждый поток пишет в свой набор счётчиков без синхронизации; читатели (JMX и сводка)
+ * складывают наборы и могут увидеть значения с небольшим опозданием.
+ * Каждые {@code island.profiling.summaryEvery} шагов (по умолчанию 100) в лог пишется сводка.
+ * Показатели доступны через MXBean {@value #OBJECT_NAME}.
+ */
+public final class StepProfiler {
+    private static final Logger LOG = LoggerFactory.getLogger(StepProfiler.class);
+    public static final boolean ENABLED = Boolean.getBoolean("island.profiling");
+    private static final int SUMMARY_EVERY = Integer.getInteger("island.profiling.summaryEvery", 100);
+    private static final String OBJECT_NAME = "com.javarush.ivannikov:type=StepProfiler";
+    private static final StepPhase[] PHASES = StepPhase.values();
+    private static final List<Shard> SHARDS = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Shard> SHARD = ThreadLocal.withInitial(() -> {
+        Shard shard = new Shard(Thread.currentThread().getName());
+        SHARDS.add(shard);
+        return shard;
+    });
+    private static final Queue<Shard> IDLE_SHARDS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Shard> BORROWED = new ThreadLocal<>();
+
+    private static volatile long lastStepNanos;
+    private static final AtomicLong COMPLETED_STEPS = new AtomicLong();
+    private static Totals baseline = new Totals();
+    private static Totals lastSummary = new Totals();
+
+    static {
+        if (ENABLED) {
+            registerMBean();
+        }
+    }
+
+    private StepProfiler() {
+    }
+
+    /**
+     * Привязывает к текущему (виртуальному) потоку свободный набор счётчиков;
+     * парный вызов — detach(). Без этого каждый короткоживущий поток
+     * оставлял бы в профилировщике свой набор навсегда
+     */
+    public static void attach() {
+        if (!ENABLED) {
+            return;
+        }
+        Shard shard = IDLE_SHARDS.poll();
+        if (shard == null) {
+            shard = new Shard("virtual-" + SHARDS.size());
+            SHARDS.add(shard);
+        }
+        BORROWED.set(shard);
+        SHARD.set(shard);
+    }
+
+    public static void detach() {
+        if (!ENABLED) {
+            return;
+        }
+        Shard shard = BORROWED.get();
+        if (shard == null) {
+            return;
+        }
+        BORROWED.remove();
+        SHARD.remove();
+        IDLE_SHARDS.add(shard);
+    }
+
+    /**
+     * Момент начала замера или 0, если профилирование выключено
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Добавляет к фазе время, прошедшее с started
+     *
+     * @return момент окончания замера, чтобы от него можно было отсчитать следующую фазу
+     */
+    public static long phase(StepPhase phase, long started) {
+        if (!ENABLED) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        SHARD.get().phaseNanos[phase.ordinal()] += now - started;
+        return now;
+    }
+
+    /**
+     * Учитывает выполненную задачу пула
+     *
+     * @param submitted момент постановки задачи в очередь или 0, если он неизвестен
+     * @param started   момент начала выполнения
+     */
+    public static void task(long submitted, long started) {
+        if (!ENABLED) {
+            return;
+        }
+        long run = System.nanoTime() - started;
+        Shard shard = SHARD.get();
+        shard.tasks++;
+        shard.taskNanos += run;
+        shard.taskMaxNanos = Math.max(shard.taskMaxNanos, run);
+        if (submitted != 0) {
+            shard.taskQueueNanos += started - submitted;
+        }
+    }
+
+    /**
+     * Учитывает захват блокировки локации
+     *
+     * @param waitNanos время ожидания; 0 — блокировка была свободна
+     */
+    public static void lockAcquired(long waitNanos) {
+        if (!ENABLED) {
+            return;
+        }
+        Shard shard = SHARD.get();
+        shard.lockAcquisitions++;
+        if (waitNanos > 0) {
+            shard.lockContentions++;
+            shard.lockWaitNanos += waitNanos;
+        }
+    }
+
+    public static void organisms(int count) {
+        if (!ENABLED) {
+            return;
+        }
+        SHARD.get().organisms += count;
+    }
+
+    /**
+     * Завершает замер шага, начатого в started, и раз в summaryEvery шагов пишет сводку
+     * Шаги считаются общим счётчиком: шаг может завершать любой поток (при Island.run —
+     * пришедший к барьеру последним), и счётчик набора одного потока сводку не определяет
+     */
+    public static void stepCompleted(long started) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - started;
+        Shard shard = SHARD.get();
+        shard.steps++;
+        shard.stepNanos += nanos;
+        lastStepNanos = nanos;
+        if (SUMMARY_EVERY > 0 && COMPLETED_STEPS.incrementAndGet() % SUMMARY_EVERY == 0) {
+            logSummary();
+        }
+    }
+
+    private static synchronized void logSummary() {
+        Totals now = Totals.capture();
+        Totals delta = now.minus(lastSummary);
+        lastSummary = now;
+        LOG.info("Профиль за {} шагов: шаг {} мс, обработка {} мс, перемещение {} мс, питание {} мс, "
+                        + "размножение {} мс, слияние {} мс, пул {} мс, подсчёт {} мс, трава {} мс, "
+                        + "плотность {} мс на шаг",
+                delta.steps, perStep(delta.stepNanos, delta.steps),
+                perStep(delta.phaseNanos[StepPhase.PROCESS.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.MOVE.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.EAT.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.REPRODUCE.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.MERGE.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.RECYCLE.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.COUNT.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.GROW.ordinal()], delta.steps),
+                perStep(delta.phaseNanos[StepPhase.SENSE.ordinal()], delta.steps));
+        LOG.info("Задач {}, в среднем {} мкс, ожидание в очереди {} мкс; блокировок {}, с ожиданием {} ({} мс)",
+                delta.tasks, micros(delta.taskNanos, delta.tasks), micros(delta.taskQueueNanos, delta.tasks),
+                delta.lockAcquisitions, delta.lockContentions, String.format("%.3f", delta.lockWaitNanos / 1e6));
+        LOG.info("Животных обработано по потокам с начала замера: {}", organismsByThread());
+    }
+
+    private static String perStep(long nanos, long steps) {
+        return String.format("%.3f", steps == 0 ? 0 : nanos / 1e6 / steps);
+    }
+
+    private static String micros(long nanos, long count) {
+        return String.format("%.1f", count == 0 ? 0 : nanos / 1e3 / count);
+    }
+
+    private static Map<String, Long> organismsByThread() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Shard shard : SHARDS) {
+            long organisms = shard.organisms - shard.organismsAtReset;
+            if (organisms > 0) {
+                result.merge(shard.thread, organisms, Long::sum);
+            }
+        }
+        return result;
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOG.warn("Не удалось зарегистрировать MBean профилировщика", e);
+        }
+    }
+
+    /**
+     * Счётчики одного потока; пишет только сам поток
+     */
+    private static final class Shard {
+        private final String thread;
+        private final long[] phaseNanos = new long[PHASES.length];
+        private long steps;
+        private long stepNanos;
+        private long tasks;
+        private long taskNanos;
+        private long taskQueueNanos;
+        private long taskMaxNanos;
+        private long lockAcquisitions;
+        private long lockContentions;
+        private long lockWaitNanos;
+        private long organisms;
+        private long organismsAtReset;
+
+        private Shard(String thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Сумма счётчиков всех потоков на момент вызова capture()
+     */
+    private static final class Totals {
+        private final long[] phaseNanos = new long[PHASES.length];
+        private long steps;
+        private long stepNanos;
+        private long tasks;
+        private long taskNanos;
+        private long taskQueueNanos;
+        private long taskMaxNanos;
+        private long lockAcquisitions;
+        private long lockContentions;
+        private long lockWaitNanos;
+
+        private static Totals capture() {
+            Totals totals = new Totals();
+            for (Shard shard : SHARDS) {
+                for (int i = 0; i < PHASES.length; i++) {
+                    totals.phaseNanos[i] += shard.phaseNanos[i];
+                }
+                totals.steps += shard.steps;
+                totals.stepNanos += shard.stepNanos;
+                totals.tasks += shard.tasks;
+                totals.taskNanos += shard.taskNanos;
+                totals.taskQueueNanos += shard.taskQueueNanos;
+                totals.taskMaxNanos = Math.max(totals.taskMaxNanos, shard.taskMaxNanos);
+                totals.lockAcquisitions += shard.lockAcquisitions;
+                totals.lockContentions += shard.lockContentions;
+                totals.lockWaitNanos += shard.lockWaitNanos;
+            }
+            return totals;
+        }
+
+        private Totals minus(Totals other) {
+            Totals delta = new Totals();
+            for (int i = 0; i < PHASES.length; i++) {
+                delta.phaseNanos[i] = phaseNanos[i] - other.phaseNanos[i];
+            }
+            delta.steps = steps - other.steps;
+            delta.stepNanos = stepNanos - other.stepNanos;
+            delta.tasks = tasks - other.tasks;
+            delta.taskNanos = taskNanos - other.taskNanos;
+            delta.taskQueueNanos = taskQueueNanos - other.taskQueueNanos;
+            delta.taskMaxNanos = taskMaxNanos;
+            delta.lockAcquisitions = lockAcquisitions - other.lockAcquisitions;
+            delta.lockContentions = lockContentions - other.lockContentions;
+            delta.lockWaitNanos = lockWaitNanos - other.lockWaitNanos;
+            return delta;
+        }
+    }
+
+    private static final class Bean implements StepProfilerMXBean {
+        private static Totals current() {
+            synchronized (StepProfiler.class) {
+                return Totals.capture().minus(baseline);
+            }
+        }
+
+        @Override
+        public long getSteps() {
+            return current().steps;
+        }
+
+        @Override
+        public double getLastStepMillis() {
+            return lastStepNanos / 1e6;
+        }
+
+        @Override
+        public double getMeanStepMillis() {
+            Totals totals = current();
+            return totals.steps == 0 ? 0 : totals.stepNanos / 1e6 / totals.steps;
+        }
+
+        @Override
+        public Map<String, Double> getPhaseMillis() {
+            Totals totals = current();
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (StepPhase phase : PHASES) {
+                result.put(phase.name(), totals.phaseNanos[phase.ordinal()] / 1e6);
+            }
+            return result;
+        }
+
+        @Override
+        public long getTasks() {
+            return current().tasks;
+        }
+
+        @Override
+        public double getMeanTaskMicros() {
+            Totals totals = current();
+            return totals.tasks == 0 ? 0 : totals.taskNanos / 1e3 / totals.tasks;
+        }
+
+        @Override
+        public double getMaxTaskMicros() {
+            return current().taskMaxNanos / 1e3;
+        }
+
+        @Override
+        public double getMeanTaskQueueMicros() {
+            Totals totals = current();
+            return totals.tasks == 0 ? 0 : totals.taskQueueNanos / 1e3 / totals.tasks;
+        }
+
+        @Override
+        public long getLockAcquisitions() {
+            return current().lockAcquisitions;
+        }
+
+        @Override
+        public long getLockContentions() {
+            return current().lockContentions;
+        }
+
+        @Override
+        public double getLockWaitMillis() {
+            return current().lockWaitNanos / 1e6;
+        }
+
+        @Override
+        public Map<String, Long> getOrganismsByThread() {
+            return organismsByThread();
+        }
+
+        /**
+         * Обнуляет показатели; максимальная длительность задачи сбрасывается
+         * без синхронизации с потоками и может пережить сброс одного замера
+         */
+        @Override
+        public void reset() {
+            synchronized (StepProfiler.class) {
+                for (Shard shard : SHARDS) {
+                    shard.taskMaxNanos = 0;
+                    shard.organismsAtReset = shard.organisms;
+                }
+                baseline = Totals.capture();
+                lastSummary = baseline;
+            }
+        }
+    }
+}
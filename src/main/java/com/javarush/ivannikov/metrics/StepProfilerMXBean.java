@@ -0,0 +1,41 @@
+package com.javarush.ivannikov.metrics;
+
+import java.util.Map;
+
+/**
+ * Показатели StepProfiler, доступные через JMX (jconsole, VisualVM)
+ * Значения накоплены с запуска или с последнего вызова reset()
+ */
+public interface StepProfilerMXBean {
+    long getSteps();
+
+    double getLastStepMillis();
+
+    double getMeanStepMillis();
+
+    /**
+     * Суммарное время фаз в миллисекундах, ключ — имя StepPhase
+     */
+    Map<String, Double> getPhaseMillis();
+
+    long getTasks();
+
+    double getMeanTaskMicros();
+
+    double getMaxTaskMicros();
+
+    double getMeanTaskQueueMicros();
+
+    long getLockAcquisitions();
+
+    long getLockContentions();
+
+    double getLockWaitMillis();
+
+    /**
+     * Число животных, обработанных каждым потоком, ключ — имя потока
+     */
+    Map<String, Long> getOrganismsByThread();
+
+    void reset();
+}
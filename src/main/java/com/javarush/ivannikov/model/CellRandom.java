@@ -0,0 +1,47 @@
+package com.javarush.ivannikov.model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Генератор случайных чисел клетки для детерминированного режима
+ * Использует тот же алгоритм SplitMix64, что и SplittableRandom, но допускает
+ * повторную инициализацию, поэтому один экземпляр клетки переиспользуется на всех шагах.
+ * Поток чисел клетки зависит только от (seed, шаг, номер клетки), а не от того,
+ * какой поток и в каком порядке её обрабатывает.
+ */
+public final class CellRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    public CellRandom() {
+    }
+
+    public CellRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Выводит начальное состояние потока клетки из общего seed, номера шага и номера клетки
+     */
+    public static long seedFor(long seed, long step, long cell) {
+        return mix(seed ^ mix(step * GOLDEN_GAMMA + mix(cell + GOLDEN_GAMMA)));
+    }
+
+    public CellRandom reseed(long seed) {
+        this.state = seed;
+        return this;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,72 @@
+package com.javarush.ivannikov.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Плотность в виде гауссовых пятен вокруг случайных центров
+ * Центры разложены по корзинам со стороной в три радиуса, поэтому для клетки
+ * просматриваются только центры соседних корзин, а не все.
+ */
+final class ClusteredDensity implements PopulationDensity {
+    private final double peak;
+    private final double inverseTwoSigmaSquared;
+    private final double cutoffSquared;
+    private final int bucketSize;
+    private final int bucketCols;
+    private final int bucketRows;
+    private final int[] bucketStart;
+    private final int[] centerRow;
+    private final int[] centerCol;
+
+    ClusteredDensity(int rows, int cols, int clusters, double radius, double peak, long seed) {
+        if (rows <= 0 || cols <= 0 || clusters <= 0 || radius <= 0 || peak < 0) {
+            throw new IllegalArgumentException("Размер острова, число стай и радиус должны быть положительными");
+        }
+        this.peak = peak;
+        this.inverseTwoSigmaSquared = 1 / (2 * radius * radius);
+        this.cutoffSquared = 9 * radius * radius;
+        this.bucketSize = (int) Math.max(1, Math.ceil(3 * radius));
+        this.bucketRows = (rows + bucketSize - 1) / bucketSize;
+        this.bucketCols = (cols + bucketSize - 1) / bucketSize;
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] rowsDrawn = new int[clusters];
+        int[] colsDrawn = new int[clusters];
+        int[] bucketOf = new int[clusters];
+        this.bucketStart = new int[bucketRows * bucketCols + 1];
+        for (int i = 0; i < clusters; i++) {
+            rowsDrawn[i] = random.nextInt(rows);
+            colsDrawn[i] = random.nextInt(cols);
+            bucketOf[i] = (rowsDrawn[i] / bucketSize) * bucketCols + colsDrawn[i] / bucketSize;
+            bucketStart[bucketOf[i] + 1]++;
+        }
+        for (int b = 0; b < bucketRows * bucketCols; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        this.centerRow = new int[clusters];
+        this.centerCol = new int[clusters];
+        int[] next = bucketStart.clone();
+        for (int i = 0; i < clusters; i++) {
+            int slot = next[bucketOf[i]]++;
+            centerRow[slot] = rowsDrawn[i];
+            centerCol[slot] = colsDrawn[i];
+        }
+    }
+
+    @Override
+    public double expected(int row, int col) {
+        int bucketRow = row / bucketSize;
+        int bucketCol = col / bucketSize;
+        double nearest = Double.MAX_VALUE;
+        for (int br = Math.max(bucketRow - 1, 0); br <= Math.min(bucketRow + 1, bucketRows - 1); br++) {
+            for (int bc = Math.max(bucketCol - 1, 0); bc <= Math.min(bucketCol + 1, bucketCols - 1); bc++) {
+                int bucket = br * bucketCols + bc;
+                for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+                    double dr = row - centerRow[i];
+                    double dc = col - centerCol[i];
+                    nearest = Math.min(nearest, dr * dr + dc * dc);
+                }
+            }
+        }
+        return nearest > cutoffSquared ? 0 : peak * Math.exp(-nearest * inverseTwoSigmaSquared);
+    }
+}
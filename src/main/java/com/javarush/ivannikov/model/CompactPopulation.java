@@ -0,0 +1,546 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.metrics.StepPhase;
+import com.javarush.ivannikov.metrics.StepProfiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Компактное хранилище популяции острова (structure-of-arrays)
+ * Для каждого вида хранятся примитивные массивы сытости, скорости, координат
+ * и битовая маска живых особей. Особи одного вида упорядочены по номеру клетки,
+ * cellStart[c]..cellStart[c + 1] задаёт диапазон особей клетки c.
+ * Объекты Organism и Location для особей не создаются.
+ */
+public class CompactPopulation {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int rows;
+    private final int cols;
+    private final int cells;
+    private final boolean[] grass;
+    private final List<Species> species;
+    private final SpeciesColumns[] columns;
+    private final PopulationCensus census;
+    private Vegetation vegetation;
+    private DensityField densityField;
+    private boolean capacityLimits;
+    private boolean seeded;
+    private long seed;
+    private long step;
+
+    public CompactPopulation(int rows, int cols, PopulationCensus census) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Размер острова должен быть положительным");
+        }
+        if ((long) rows * cols > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Слишком большой остров для компактного хранилища");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        this.grass = new boolean[cells];
+        this.census = census;
+        this.species = census.getRegistry().all();
+        this.columns = new SpeciesColumns[species.size()];
+        for (int s = 0; s < columns.length; s++) {
+            columns[s] = new SpeciesColumns(species.get(s), cells);
+        }
+    }
+
+    /**
+     * Включает детерминированный режим: каждая клетка на каждом шаге получает
+     * собственный поток случайных чисел (см. CellRandom)
+     */
+    public void setSeed(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    /**
+     * Слой растительности: травоядные едят его биомассу вместо флага травы клетки
+     */
+    public void setVegetation(Vegetation vegetation) {
+        this.vegetation = vegetation;
+    }
+
+    /**
+     * Слой плотности для направленного движения; строится в начале каждого шага
+     */
+    public void setDensityField(DensityField densityField) {
+        this.densityField = densityField;
+    }
+
+    /**
+     * Ограничение вместимости клеток (Species.getMaxPerCell)
+     * Потоки шага двигают особей между клетками одновременно, поэтому, чтобы результат
+     * не зависел от их порядка, заполненность клетки берётся на начало шага: особь
+     * не переходит в клетку, где мест не было уже в начале шага, а детёнышей рождается
+     * не больше, чем мест осталось после живых особей клетки. За один шаг клетка может
+     * переполниться только приходом особей из соседних клеток, после чего рост в ней
+     * останавливается.
+     */
+    public void setCapacityLimits(boolean capacityLimits) {
+        this.capacityLimits = capacityLimits;
+    }
+
+    public void setGrass(int row, int col, boolean hasGrass) {
+        grass[row * cols + col] = hasGrass;
+    }
+
+    /**
+     * Добавляет новую особь вида с начальными параметрами в клетку
+     * Вызывается из одного потока вне шага симуляции
+     */
+    public void add(Species species, int row, int col) {
+        SpeciesColumns column = columns[species.getId()];
+        column.append(row, col);
+        if (column.occupancyStep == step) {
+            column.occupancy[row * cols + col]++;
+        }
+        census.born(species);
+    }
+
+    /**
+     * Добавляет особь, если в клетке есть место (Species.getMaxPerCell)
+     * Вызывается из одного потока вне шага симуляции. Заполненность клеток вида
+     * пересчитывается при первом добавлении после шага, дальше проверка и
+     * добавление стоят O(1)
+     *
+     * @return false, если клетка заполнена
+     */
+    public boolean tryAdd(Species species, int row, int col) {
+        SpeciesColumns column = columns[species.getId()];
+        if (column.occupancy()[row * cols + col] >= column.maxPerCell) {
+            return false;
+        }
+        add(species, row, col);
+        return true;
+    }
+
+    public int countAlive() {
+        int count = 0;
+        for (SpeciesColumns column : columns) {
+            count += column.aliveCount;
+        }
+        return count;
+    }
+
+    public int countAlive(Species species) {
+        return columns[species.getId()].aliveCount;
+    }
+
+    /**
+     * Число живых особей вида в клетке; вызывать между шагами
+     */
+    public int countAlive(Species species, int row, int col) {
+        return columns[species.getId()].occupancy()[row * cols + col];
+    }
+
+    /**
+     * Один шаг симуляции:
+     * 1. упорядочивание особей по клеткам с отбрасыванием мёртвых;
+     * 2. параллельная обработка диапазонов клеток (перемещение, питание, подсчёт пар);
+     * 3. добавление родившихся особей.
+     *
+     * @param executor    пул потоков острова
+     * @param parallelism число задач, на которое делятся клетки
+     * @return момент, от которого StepProfiler отсчитывает PROCESS: окончание построения
+     *         слоя плотности (фаза SENSE, включая упорядочивание) или начало шага без него
+     */
+    public long simulateStep(ExecutorService executor, int parallelism) {
+        long sensed = StepProfiler.start();
+        List<Future<?>> futures = new ArrayList<>();
+        for (SpeciesColumns column : columns) {
+            futures.add(executor.submit(column::rebucket));
+        }
+        StepTasks.awaitAll(futures);
+        if (densityField != null) {
+            densityField.build(executor, parallelism, this::countCell);
+            sensed = StepProfiler.phase(StepPhase.SENSE, sensed);
+        }
+
+        int tasks = Math.max(1, Math.min(parallelism, cells));
+        StepBuffer[] buffers = new StepBuffer[tasks];
+        futures.clear();
+        for (int t = 0; t < tasks; t++) {
+            int fromCell = (int) ((long) t * cells / tasks);
+            int toCell = (int) ((long) (t + 1) * cells / tasks);
+            StepBuffer buffer = new StepBuffer(columns.length);
+            buffers[t] = buffer;
+            long submitted = StepProfiler.start();
+            futures.add(executor.submit(() -> {
+                long started = StepProfiler.start();
+                processCells(fromCell, toCell, buffer);
+                StepProfiler.task(submitted, started);
+            }));
+        }
+        StepTasks.awaitAll(futures);
+
+        for (StepBuffer buffer : buffers) {
+            for (int s = 0; s < columns.length; s++) {
+                SpeciesColumns column = columns[s];
+                column.aliveCount -= buffer.deaths[s];
+                int[] births = buffer.birthCells[s];
+                for (int i = 0; i < buffer.birthCount[s]; i++) {
+                    column.append(births[i] / cols, births[i] % cols);
+                }
+                census.changed(species.get(s), buffer.birthCount[s] - buffer.deaths[s]);
+            }
+        }
+        step++;
+        return sensed;
+    }
+
+    private void processCells(int fromCell, int toCell, StepBuffer buffer) {
+        CellRandom cellRandom = seeded ? new CellRandom() : null;
+        RandomGenerator random = ThreadLocalRandom.current();
+        int[] preyAlive = new int[columns.length];
+        for (int cell = fromCell; cell < toCell; cell++) {
+            if (seeded) {
+                random = cellRandom.reseed(CellRandom.seedFor(seed, step, cell));
+            }
+            Arrays.fill(preyAlive, -1);
+            for (int s = 0; s < columns.length; s++) {
+                SpeciesColumns column = columns[s];
+                int end = column.cellStart[cell + 1];
+                for (int i = column.cellStart[cell]; i < end; i++) {
+                    if (!column.isAlive(i)) {
+                        continue;
+                    }
+                    move(column, i, random);
+                    int satiety = column.satiety[i];
+                    boolean fed = false;
+                    if (column.prey.length > 0) {
+                        if (preyAlive[s] < 0) {
+                            preyAlive[s] = countAlive(cell, column.prey);
+                        }
+                        // особь своего вида в добыче — сам охотник, его не выбираем
+                        int available = column.eatChance[s] > 0 ? preyAlive[s] - 1 : preyAlive[s];
+                        int victim = available > 0
+                                ? killPrey(cell, column, i, random.nextInt(available), random, buffer)
+                                : -1;
+                        fed = victim >= 0;
+                        if (fed) {
+                            for (int p = 0; p < columns.length; p++) {
+                                if (preyAlive[p] >= 0 && columns[p].eatChance[victim] > 0) {
+                                    preyAlive[p]--;
+                                }
+                            }
+                        }
+                    }
+                    if (!fed && column.type == OrganismType.HERBIVORE) {
+                        int chance = random.nextInt(0, column.successfulEating + 1);
+                        fed = chance % 2 == 0 && (vegetation != null ? vegetation.graze(cell) : grass[cell]);
+                    }
+                    column.satiety[i] = (byte) (fed ? Math.min(satiety + 1, column.maxSatiety) : satiety - 2);
+                    if (satiety < column.maxSatiety / 2 || satiety > column.maxSatiety * 0.8) {
+                        column.speed[i] = (byte) Math.max(column.speed[i] - 1, 0);
+                    } else {
+                        column.speed[i] = (byte) column.maxSpeed;
+                    }
+                    if (satiety <= 0 && column.isAlive(i)) {
+                        column.kill(i);
+                        buffer.deaths[s]++;
+                    }
+                }
+            }
+            for (int s = 0; s < columns.length; s++) {
+                SpeciesColumns column = columns[s];
+                int adults = 0;
+                int end = column.cellStart[cell + 1];
+                for (int i = column.cellStart[cell]; i < end; i++) {
+                    if (column.isAlive(i)) {
+                        adults++;
+                    }
+                }
+                int pairs = adults / 2;
+                if (capacityLimits) {
+                    pairs = Math.min(pairs, Math.max(0, column.maxPerCell - adults));
+                }
+                for (int pair = 0; pair < pairs; pair++) {
+                    buffer.addBirth(s, cell);
+                }
+            }
+        }
+    }
+
+    private void move(SpeciesColumns column, int i, RandomGenerator random) {
+        int speed = column.speed[i];
+        int deltaRow = random.nextInt(-speed, speed + 1);
+        int deltaCol = random.nextInt(-speed, speed + 1);
+        if (densityField != null) {
+            deltaRow = densityField.steerRow(column.id, column.row[i], column.col[i], deltaRow);
+            deltaCol = densityField.steerCol(column.id, column.row[i], column.col[i], deltaCol);
+        }
+        int newRow = column.row[i] + deltaRow;
+        int newCol = column.col[i] + deltaCol;
+        if (newRow < 0 || newRow >= rows || newCol < 0 || newCol >= cols) {
+            return;
+        }
+        if (capacityLimits) {
+            int cell = newRow * cols + newCol;
+            if (column.cellStart[cell + 1] - column.cellStart[cell] >= column.maxPerCell) {
+                return;
+            }
+        }
+        column.row[i] = newRow;
+        column.col[i] = newCol;
+    }
+
+    private void countCell(int row, int col, int[] counts) {
+        int cell = row * cols + col;
+        for (int s = 0; s < columns.length; s++) {
+            counts[s] = countAlive(cell, s);
+        }
+        counts[densityField.getGrassChannel()] =
+                (vegetation != null ? vegetation.hasFood(row, col) : grass[cell]) ? 1 : 0;
+    }
+
+    private int countAlive(int cell, int speciesId) {
+        SpeciesColumns column = columns[speciesId];
+        int count = 0;
+        int end = column.cellStart[cell + 1];
+        for (int i = column.cellStart[cell]; i < end; i++) {
+            if (column.isAlive(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Число живых особей указанных видов в клетке
+     */
+    private int countAlive(int cell, int[] speciesIds) {
+        int count = 0;
+        for (int s : speciesIds) {
+            count += countAlive(cell, s);
+        }
+        return count;
+    }
+
+    /**
+     * Охотник встречает victim-ю живую особь своей добычи, не считая себя, и съедает её
+     * с вероятностью из матрицы поедания
+     *
+     * @param hunter номер охотника в столбцах его вида
+     * @return номер вида съеденной особи или -1, если охота не удалась
+     */
+    private int killPrey(int cell, SpeciesColumns predator, int hunter, int victim, RandomGenerator random,
+                         StepBuffer buffer) {
+        for (int s : predator.prey) {
+            SpeciesColumns column = columns[s];
+            int end = column.cellStart[cell + 1];
+            for (int i = column.cellStart[cell]; i < end; i++) {
+                if (column == predator && i == hunter) {
+                    continue;
+                }
+                if (column.isAlive(i) && victim-- == 0) {
+                    int chance = predator.eatChance[s];
+                    if (chance < 100 && random.nextInt(100) >= chance) {
+                        return -1;
+                    }
+                    column.kill(i);
+                    buffer.deaths[s]++;
+                    return s;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Столбцы одного вида: параметры вида и массивы состояния особей
+     */
+    private final class SpeciesColumns {
+        private final int id;
+        private final int maxPerCell;
+        private final OrganismType type;
+        private final int maxSpeed;
+        private final int maxSatiety;
+        private final int successfulEating;
+        private final int[] prey;
+        private final int[] eatChance;
+        private final byte initialSpeed;
+        private final byte initialSatiety;
+        private final int[] cellStart;
+
+        private byte[] satiety = new byte[INITIAL_CAPACITY];
+        private byte[] speed = new byte[INITIAL_CAPACITY];
+        private int[] row = new int[INITIAL_CAPACITY];
+        private int[] col = new int[INITIAL_CAPACITY];
+        private long[] alive = new long[(INITIAL_CAPACITY + 63) >>> 6];
+        private byte[] satietyTmp = new byte[0];
+        private byte[] speedTmp = new byte[0];
+        private int[] rowTmp = new int[0];
+        private int[] colTmp = new int[0];
+        private int size;
+        private int aliveCount;
+        private int[] occupancy;
+        private long occupancyStep = -1;
+
+        private SpeciesColumns(Species species, int cells) {
+            this.id = species.getId();
+            this.maxPerCell = species.getMaxPerCell();
+            this.type = species.getType();
+            this.maxSpeed = species.getMaxSpeed();
+            this.maxSatiety = species.getMaxSatiety();
+            this.successfulEating = species.getSuccessfulEating();
+            this.prey = species.getPrey();
+            this.eatChance = new int[columns.length];
+            for (int s = 0; s < eatChance.length; s++) {
+                eatChance[s] = species.getEatChance(s);
+            }
+            this.initialSpeed = (byte) species.getSpeed();
+            this.initialSatiety = (byte) species.getSatiety();
+            this.cellStart = new int[cells + 1];
+        }
+
+        private void append(int r, int c) {
+            if (size == row.length) {
+                int capacity = size + (size >> 1);
+                satiety = Arrays.copyOf(satiety, capacity);
+                speed = Arrays.copyOf(speed, capacity);
+                row = Arrays.copyOf(row, capacity);
+                col = Arrays.copyOf(col, capacity);
+                alive = Arrays.copyOf(alive, (capacity + 63) >>> 6);
+            }
+            satiety[size] = initialSatiety;
+            speed[size] = initialSpeed;
+            row[size] = r;
+            col[size] = c;
+            alive[size >>> 6] |= 1L << size;
+            size++;
+            aliveCount++;
+        }
+
+        /**
+         * Живые особи вида по клеткам; действительны до следующего шага
+         */
+        private int[] occupancy() {
+            if (occupancyStep == step) {
+                return occupancy;
+            }
+            if (occupancy == null) {
+                occupancy = new int[cells];
+            } else {
+                Arrays.fill(occupancy, 0);
+            }
+            for (int i = 0; i < size; i++) {
+                if (isAlive(i)) {
+                    occupancy[row[i] * cols + col[i]]++;
+                }
+            }
+            occupancyStep = step;
+            return occupancy;
+        }
+
+        private boolean isAlive(int i) {
+            return (alive[i >>> 6] & (1L << i)) != 0;
+        }
+
+        /**
+         * Снимает бит живой особи; слово маски может делиться с соседней задачей,
+         * поэтому используется атомарная операция
+         */
+        private void kill(int i) {
+            LONGS.getAndBitwiseAnd(alive, i >>> 6, ~(1L << i));
+        }
+
+        /**
+         * Сортировка подсчётом по номеру клетки с удалением мёртвых особей
+         */
+        private void rebucket() {
+            Arrays.fill(cellStart, 0);
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (isAlive(i)) {
+                    cellStart[row[i] * cols + col[i] + 1]++;
+                    live++;
+                }
+            }
+            for (int c = 0; c < cells; c++) {
+                cellStart[c + 1] += cellStart[c];
+            }
+            if (satietyTmp.length < row.length) {
+                satietyTmp = new byte[row.length];
+                speedTmp = new byte[row.length];
+                rowTmp = new int[row.length];
+                colTmp = new int[row.length];
+            }
+            for (int i = 0; i < size; i++) {
+                if (!isAlive(i)) {
+                    continue;
+                }
+                int position = cellStart[row[i] * cols + col[i]]++;
+                satietyTmp[position] = satiety[i];
+                speedTmp[position] = speed[i];
+                rowTmp[position] = row[i];
+                colTmp[position] = col[i];
+            }
+            for (int c = cells; c > 0; c--) {
+                cellStart[c] = cellStart[c - 1];
+            }
+            cellStart[0] = 0;
+
+            byte[] bytes = satiety;
+            satiety = satietyTmp;
+            satietyTmp = bytes;
+            bytes = speed;
+            speed = speedTmp;
+            speedTmp = bytes;
+            int[] ints = row;
+            row = rowTmp;
+            rowTmp = ints;
+            ints = col;
+            col = colTmp;
+            colTmp = ints;
+            if (alive.length < ((satiety.length + 63) >>> 6)) {
+                alive = new long[(satiety.length + 63) >>> 6];
+            }
+            Arrays.fill(alive, 0L);
+            for (int i = 0; i < live >>> 6; i++) {
+                alive[i] = -1L;
+            }
+            if ((live & 63) != 0) {
+                alive[live >>> 6] = (1L << live) - 1;
+            }
+            size = live;
+            aliveCount = live;
+        }
+    }
+
+    /**
+     * Локальный буфер задачи: смерти и рождения по видам за шаг
+     */
+    private static final class StepBuffer {
+        private final int[] deaths;
+        private final int[][] birthCells;
+        private final int[] birthCount;
+
+        private StepBuffer(int species) {
+            this.deaths = new int[species];
+            this.birthCells = new int[species][INITIAL_CAPACITY];
+            this.birthCount = new int[species];
+        }
+
+        private void addBirth(int species, int cell) {
+            if (birthCount[species] == birthCells[species].length) {
+                birthCells[species] = Arrays.copyOf(birthCells[species], birthCount[species] * 2);
+            }
+            birthCells[species][birthCount[species]++] = cell;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.javarush.ivannikov.model;
+
+import java.util.function.Consumer;
+
+/**
+ * Плотная сетка: все локации создаются в конструкторе
+ */
+final class DenseGrid implements Grid {
+    private final Location[][] locations;
+
+    DenseGrid(int rows, int cols, PopulationCensus census, OrganismPool pool, Vegetation vegetation) {
+        this.locations = new Location[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                locations[i][j] = new Location(i, j, census, pool, vegetation);
+            }
+        }
+    }
+
+    @Override
+    public Location get(int row, int col) {
+        return locations[row][col];
+    }
+
+    @Override
+    public Location find(int row, int col) {
+        return locations[row][col];
+    }
+
+    /**
+     * Обходит локации построчно
+     */
+    @Override
+    public void forEach(Consumer<? super Location> action) {
+        for (Location[] row : locations) {
+            for (Location location : row) {
+                action.accept(location);
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return (long) locations.length * (locations.length == 0 ? 0 : locations[0].length);
+    }
+}
@@ -0,0 +1,200 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Слой плотности острова для направленного движения
+ * <p>
+ * Перед каждым шагом остров строит по каждому виду и по траве таблицу накопленных сумм
+ * (summed-area table): t[(i + 1) * (cols + 1) + (j + 1)] — число особей вида (или клеток
+ * с травой) в прямоугольнике [0, i] x [0, j]. Сумма по любому прямоугольнику — четыре
+ * чтения из таблицы, поэтому животное оценивает окрестность радиуса radius за постоянное
+ * время, не обходя соседние локации. Таблица строится в два параллельных прохода:
+ * полосами строк (подсчёт клеток и суммы по строке), затем полосами столбцов.
+ * <p>
+ * Хищник идёт к большей плотности своей добычи, травоядное — к клеткам с травой.
+ * Направление по каждой оси выбирается по тому, где целей больше — в полосе выше или ниже
+ * (левее или правее) клетки; модуль смещения остаётся случайным. Смещение обрезается
+ * по краю острова, поэтому ходы за край не пропадают.
+ * Память: (число видов + 1) * (rows + 1) * (cols + 1) int.
+ */
+public final class DensityField {
+    /**
+     * Заполняет число особей каждого вида в клетке, counts[species.getId()],
+     * и 1 в counts[grassChannel], если в клетке есть трава
+     */
+    interface CellCounter {
+        void count(int row, int col, int[] counts);
+    }
+
+    private final int rows;
+    private final int cols;
+    private final int stride;
+    private final int radius;
+    private final int channels;
+    private final int grassChannel;
+    private final int[][] tables;
+    private final int[][] targets;
+
+    /**
+     * @param radius радиус, в котором животное чувствует добычу и траву
+     */
+    public DensityField(int rows, int cols, int radius, SpeciesRegistry registry) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Размер острова должен быть положительным");
+        }
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Радиус чувствительности должен быть положительным");
+        }
+        if ((long) (rows + 1) * (cols + 1) > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Слишком большой остров для слоя плотности");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = cols + 1;
+        this.radius = radius;
+        this.grassChannel = registry.size();
+        this.channels = grassChannel + 1;
+        this.tables = new int[channels][(rows + 1) * stride];
+        this.targets = new int[registry.size()][];
+        for (Species species : registry.all()) {
+            int[] prey = species.getPrey();
+            if (species.getType() == OrganismType.PREDATOR) {
+                targets[species.getId()] = prey;
+            } else {
+                // всеядное идёт и к добыче, и к траве
+                targets[species.getId()] = Arrays.copyOf(prey, prey.length + 1);
+                targets[species.getId()][prey.length] = grassChannel;
+            }
+        }
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    int getGrassChannel() {
+        return grassChannel;
+    }
+
+    /**
+     * Пересчитывает таблицы по текущему состоянию острова; вызывается между шагами
+     *
+     * @param parallelism на сколько полос делятся строки и столбцы
+     */
+    void build(ExecutorService executor, int parallelism, CellCounter counter) {
+        int rowBands = Math.max(1, Math.min(rows, parallelism));
+        List<Future<?>> futures = new ArrayList<>(Math.max(rowBands, parallelism));
+        for (int t = 0; t < rowBands; t++) {
+            int startRow = (int) ((long) t * rows / rowBands);
+            int endRow = (int) ((long) (t + 1) * rows / rowBands);
+            futures.add(executor.submit(() -> sumRows(startRow, endRow, counter)));
+        }
+        StepTasks.awaitAll(futures);
+        futures.clear();
+        int colBands = Math.max(1, Math.min(cols, parallelism));
+        for (int t = 0; t < colBands; t++) {
+            int startCol = 1 + (int) ((long) t * cols / colBands);
+            int endCol = 1 + (int) ((long) (t + 1) * cols / colBands);
+            futures.add(executor.submit(() -> sumColumns(startCol, endCol)));
+        }
+        StepTasks.awaitAll(futures);
+    }
+
+    private void sumRows(int startRow, int endRow, CellCounter counter) {
+        int[] counts = new int[channels];
+        int[] running = new int[channels];
+        for (int i = startRow; i < endRow; i++) {
+            Arrays.fill(running, 0);
+            int base = (i + 1) * stride + 1;
+            for (int j = 0; j < cols; j++) {
+                Arrays.fill(counts, 0);
+                counter.count(i, j, counts);
+                for (int c = 0; c < channels; c++) {
+                    running[c] += counts[c];
+                    tables[c][base + j] = running[c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Столбцы таблицы [startCol, endCol): к каждой строке прибавляется предыдущая
+     */
+    private void sumColumns(int startCol, int endCol) {
+        for (int[] table : tables) {
+            for (int i = 2; i <= rows; i++) {
+                int row = i * stride;
+                int previous = row - stride;
+                for (int j = startCol; j < endCol; j++) {
+                    table[row + j] += table[previous + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Число особей вида (или клеток с травой для grassChannel) в прямоугольнике
+     * [row0, row1] x [col0, col1]; части прямоугольника за краем острова не считаются
+     */
+    public int sum(int channel, int row0, int col0, int row1, int col1) {
+        row0 = Math.max(row0, 0);
+        col0 = Math.max(col0, 0);
+        row1 = Math.min(row1, rows - 1);
+        col1 = Math.min(col1, cols - 1);
+        if (row0 > row1 || col0 > col1) {
+            return 0;
+        }
+        int[] table = tables[channel];
+        int top = row0 * stride;
+        int bottom = (row1 + 1) * stride;
+        return table[bottom + col1 + 1] - table[top + col1 + 1] - table[bottom + col0] + table[top + col0];
+    }
+
+    private int sumTargets(int[] channels, int row0, int col0, int row1, int col1) {
+        int sum = 0;
+        for (int channel : channels) {
+            sum += sum(channel, row0, col0, row1, col1);
+        }
+        return sum;
+    }
+
+    /**
+     * Смещение по строкам для особи вида speciesId в клетке (row, col)
+     *
+     * @param delta случайное смещение; его модуль сохраняется, знак выбирается к большей
+     *              плотности целей, а при равенстве остаётся случайным
+     */
+    public int steerRow(int speciesId, int row, int col, int delta) {
+        int[] channels = targets[speciesId];
+        int above = sumTargets(channels, row - radius, col - radius, row - 1, col + radius);
+        int below = sumTargets(channels, row + 1, col - radius, row + radius, col + radius);
+        return Math.max(-row, Math.min(steer(delta, above, below), rows - 1 - row));
+    }
+
+    /**
+     * Смещение по столбцам, см. steerRow
+     */
+    public int steerCol(int speciesId, int row, int col, int delta) {
+        int[] channels = targets[speciesId];
+        int left = sumTargets(channels, row - radius, col - radius, row + radius, col - 1);
+        int right = sumTargets(channels, row - radius, col + 1, row + radius, col + radius);
+        return Math.max(-col, Math.min(steer(delta, left, right), cols - 1 - col));
+    }
+
+    private static int steer(int delta, int before, int after) {
+        if (before == after) {
+            return delta;
+        }
+        int magnitude = Math.abs(delta);
+        return after > before ? magnitude : -magnitude;
+    }
+}
@@ -0,0 +1,154 @@
+package com.javarush.ivannikov.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Карта плотности, растянутая на остров по ближайшему соседу
+ * Значения карты нормируются на наибольшее, так что в самой плотной клетке ожидается peak особей.
+ */
+final class DensityMap implements PopulationDensity {
+    private final float[] values;
+    private final int mapRows;
+    private final int mapCols;
+    private final int rows;
+    private final int cols;
+
+    private DensityMap(float[] values, int mapRows, int mapCols, int rows, int cols, double peak) {
+        if (rows <= 0 || cols <= 0 || peak < 0) {
+            throw new IllegalArgumentException("Размер острова должен быть положительным, плотность — неотрицательной");
+        }
+        float max = 0;
+        for (float value : values) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Карта плотности содержит отрицательное значение");
+            }
+            max = Math.max(max, value);
+        }
+        float scale = max == 0 ? 0 : (float) (peak / max);
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= scale;
+        }
+        this.values = values;
+        this.mapRows = mapRows;
+        this.mapCols = mapCols;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    static DensityMap load(Path path, int rows, int cols, double peak) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать карту плотности " + path, e);
+        }
+        try {
+            if (bytes.length > 1 && bytes[0] == 'P' && (bytes[1] == '2' || bytes[1] == '5')) {
+                return readPgm(bytes, rows, cols, peak);
+            }
+            return readTable(new String(bytes, StandardCharsets.UTF_8), rows, cols, peak);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректная карта плотности " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Текстовая таблица: строка файла — строка карты, числа через пробел, запятую или точку с запятой
+     */
+    private static DensityMap readTable(String text, int rows, int cols, double peak) {
+        String[] lines = text.strip().split("\\R");
+        int mapCols = -1;
+        float[] values = null;
+        int mapRows = 0;
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] cells = line.trim().split("[\\s,;]+");
+            if (mapCols < 0) {
+                mapCols = cells.length;
+                values = new float[mapCols * lines.length];
+            } else if (cells.length != mapCols) {
+                throw new IllegalArgumentException("строки карты разной длины");
+            }
+            for (int c = 0; c < mapCols; c++) {
+                values[mapRows * mapCols + c] = Float.parseFloat(cells[c]);
+            }
+            mapRows++;
+        }
+        if (mapRows == 0) {
+            throw new IllegalArgumentException("карта пуста");
+        }
+        return new DensityMap(Arrays.copyOf(values, mapRows * mapCols), mapRows, mapCols, rows, cols, peak);
+    }
+
+    /**
+     * Изображение в оттенках серого: P2 (числа текстом) или P5 (байты), светлее — плотнее
+     */
+    private static DensityMap readPgm(byte[] bytes, int rows, int cols, double peak) {
+        int[] position = {2};
+        int mapCols = nextNumber(bytes, position);
+        int mapRows = nextNumber(bytes, position);
+        int maxValue = nextNumber(bytes, position);
+        if (mapCols <= 0 || mapRows <= 0 || maxValue <= 0 || maxValue > 65535) {
+            throw new IllegalArgumentException("некорректный заголовок PGM");
+        }
+        float[] values = new float[mapRows * mapCols];
+        if (bytes[1] == '2') {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = nextNumber(bytes, position);
+            }
+        } else {
+            int offset = position[0] + 1;
+            int sampleSize = maxValue > 255 ? 2 : 1;
+            if (bytes.length < offset + values.length * sampleSize) {
+                throw new IllegalArgumentException("файл PGM обрезан");
+            }
+            for (int i = 0; i < values.length; i++) {
+                int at = offset + i * sampleSize;
+                values[i] = sampleSize == 1
+                        ? bytes[at] & 0xFF
+                        : (bytes[at] & 0xFF) << 8 | bytes[at + 1] & 0xFF;
+            }
+        }
+        return new DensityMap(values, mapRows, mapCols, rows, cols, peak);
+    }
+
+    /**
+     * Читает следующее число заголовка PGM, пропуская пробелы и комментарии
+     */
+    private static int nextNumber(byte[] bytes, int[] position) {
+        int i = position[0];
+        while (i < bytes.length && (Character.isWhitespace(bytes[i]) || bytes[i] == '#')) {
+            if (bytes[i] == '#') {
+                while (i < bytes.length && bytes[i] != '\n') {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        if (i >= bytes.length || bytes[i] < '0' || bytes[i] > '9') {
+            throw new IllegalArgumentException("ожидалось число в позиции " + i);
+        }
+        int value = 0;
+        while (i < bytes.length && bytes[i] >= '0' && bytes[i] <= '9') {
+            value = value * 10 + (bytes[i] - '0');
+            i++;
+        }
+        position[0] = i;
+        return value;
+    }
+
+    @Override
+    public double expected(int row, int col) {
+        int mapRow = (int) ((long) row * mapRows / rows);
+        int mapCol = (int) ((long) col * mapCols / cols);
+        return values[mapRow * mapCols + mapCol];
+    }
+}
@@ -0,0 +1,28 @@
+package com.javarush.ivannikov.model;
+
+import java.util.function.Consumer;
+
+/**
+ * Хранилище локаций острова
+ */
+interface Grid {
+    /**
+     * Локация клетки; в разреженной сетке создаётся при первом обращении
+     */
+    Location get(int row, int col);
+
+    /**
+     * Локация клетки или null, если клетка ещё не создана
+     */
+    Location find(int row, int col);
+
+    /**
+     * Обходит все существующие локации
+     */
+    void forEach(Consumer<? super Location> action);
+
+    /**
+     * Число существующих локаций
+     */
+    long size();
+}
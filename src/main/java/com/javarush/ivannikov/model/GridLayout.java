@@ -0,0 +1,14 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Способ хранения локаций острова
+ * DENSE - двумерный массив, все клетки создаются сразу и обходятся на каждом шаге
+ * SPARSE - локации создаются при первом заходе животного и хранятся в хеш-таблице
+ *          по упакованной координате; шаг обходит только занятые клетки, а опустевшие
+ *          освобождаются, так что память и время шага зависят от числа занятых клеток,
+ *          а не от площади острова
+ */
+public enum GridLayout {
+    DENSE,
+    SPARSE,
+}
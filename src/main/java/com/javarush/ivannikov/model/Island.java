@@ -2,112 +2,690 @@ package com.javarush.ivannikov.model;
 
 import com.javarush.ivannikov.entity.Grass;
 import com.javarush.ivannikov.entity.Organism;
-import com.javarush.ivannikov.factory.AnimalFactory;
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.event.SimulationEvents;
+import com.javarush.ivannikov.metrics.StepPhase;
+import com.javarush.ivannikov.metrics.StepProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 
 public class Island {
     private static final Logger LOG = LoggerFactory.getLogger(Island.class);
-    private final int numThreads = Runtime.getRuntime().availableProcessors() + 2;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
-    private final Location[][] locations;
+    private static final long POPULATE_STEP = -1;
+    private static final int POPULATE_BANDS_PER_THREAD = 4;
+    private final int numThreads;
+    private final ExecutorService executorService;
+    private final boolean ownsExecutor;
+    private final Grid grid;
+    private final SparseGrid sparse;
+    private final CompactPopulation compact;
+    private final MovementMode movementMode;
+    private final TileScheduler tileScheduler;
+    private final VirtualThreadScheduler virtualScheduler;
+    private volatile IslandBoundary boundary;
+    private final SpeciesRegistry speciesRegistry;
+    private final PopulationCensus census;
+    private final PopulationDensity[] densities;
+    private final List<Species> densitySpecies = new ArrayList<>();
+    private final List<Species> populationHerbivores = new ArrayList<>();
+    private final List<Species> populationPredators = new ArrayList<>();
+    private final OrganismPool pool;
+    private final Vegetation vegetation;
+    private final DensityField densityField;
+    private final boolean capacityLimits;
+    private final List<StepListener> stepListeners = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<Organism>> snapshots = ThreadLocal.withInitial(ArrayList::new);
+    private final ThreadLocal<List<Organism>> newborns = ThreadLocal.withInitial(ArrayList::new);
+    private final ThreadLocal<int[]> adultCounts;
+    private final boolean seeded;
+    private final long seed;
+    private final long grassSeed;
+    private volatile boolean grassPlanted;
     private final int rows;
     private final int cols;
+    private long step;
 
     public Island(int rows, int cols) {
-        this.locations = new Location[rows][cols];
+        this(rows, cols, PopulationBackend.OBJECTS);
+    }
+
+    /**
+     * @param backend способ хранения популяции; при COMPACT объекты Location не создаются,
+     *                а особи живут в примитивных массивах CompactPopulation
+     */
+    public Island(int rows, int cols, PopulationBackend backend) {
+        this(rows, cols, new IslandSettings().setBackend(backend));
+    }
+
+    @SuppressWarnings("this-escape")
+    public Island(int rows, int cols, IslandSettings settings) {
         this.rows = rows;
         this.cols = cols;
+        this.numThreads = settings.getParallelism();
+        this.speciesRegistry = settings.getSpeciesRegistry();
+        this.census = new PopulationCensus(speciesRegistry);
+        this.pool = new OrganismPool(speciesRegistry);
+        int speciesCount = speciesRegistry.size();
+        this.adultCounts = ThreadLocal.withInitial(() -> new int[speciesCount]);
+        this.densities = new PopulationDensity[speciesCount];
+        settings.getDensities().forEach((key, density) -> densities[speciesRegistry.get(key).getId()] = density);
+        for (Species species : speciesRegistry.all()) {
+            if (densities[species.getId()] != null) {
+                densitySpecies.add(species);
+            } else if (species.getType() == OrganismType.HERBIVORE) {
+                populationHerbivores.add(species);
+            } else {
+                populationPredators.add(species);
+            }
+        }
+        this.capacityLimits = settings.hasCapacityLimits();
+        this.seeded = settings.isSeeded();
+        this.seed = seeded ? settings.getSeed() : 0;
+        this.grassSeed = seeded ? seed : ThreadLocalRandom.current().nextLong();
+        if (seeded && settings.getMovementMode() != MovementMode.BUFFERED) {
+            LOG.info("Детерминированный режим: перемещение переключено на BUFFERED");
+            this.movementMode = MovementMode.BUFFERED;
+        } else {
+            this.movementMode = settings.getMovementMode();
+        }
         LOG.info("Начинаем создание острова размером {}х{}", rows, cols);
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                locations[i][j] = new Location(i, j);
+        this.vegetation = settings.hasVegetation()
+                ? new Vegetation(rows, cols, settings.getVegetationCapacity(),
+                settings.getVegetationRegrowth(), settings.getVegetationBite())
+                : null;
+        boolean sparseGrid = settings.getGridLayout() == GridLayout.SPARSE
+                && settings.getBackend() == PopulationBackend.OBJECTS;
+        if (settings.getSensingRadius() > 0 && sparseGrid) {
+            LOG.info("Разреженная сетка: направленное движение отключено");
+            this.densityField = null;
+        } else {
+            this.densityField = settings.getSensingRadius() > 0
+                    ? new DensityField(rows, cols, settings.getSensingRadius(), speciesRegistry)
+                    : null;
+        }
+        StepScheduler scheduler = settings.getScheduler();
+        if (sparseGrid && scheduler == StepScheduler.TILES) {
+            LOG.info("Разреженная сетка: планировщик TILES заменён на ROW_BANDS");
+            scheduler = StepScheduler.ROW_BANDS;
+        }
+        this.ownsExecutor = settings.getExecutor() == null;
+        if (!ownsExecutor && scheduler == StepScheduler.VIRTUAL) {
+            LOG.info("Общий пул: планировщик VIRTUAL заменён на ROW_BANDS");
+            scheduler = StepScheduler.ROW_BANDS;
+        }
+        if (!ownsExecutor) {
+            this.executorService = settings.getExecutor();
+        } else if (scheduler == StepScheduler.TILES) {
+            this.executorService = new ForkJoinPool(numThreads);
+        } else if (scheduler == StepScheduler.VIRTUAL) {
+            this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            this.executorService = Executors.newFixedThreadPool(numThreads);
+        }
+        if (settings.getBackend() == PopulationBackend.COMPACT) {
+            this.grid = null;
+            this.sparse = null;
+            this.compact = new CompactPopulation(rows, cols, census);
+            if (seeded) {
+                compact.setSeed(seed);
             }
+            compact.setVegetation(vegetation);
+            compact.setDensityField(densityField);
+            compact.setCapacityLimits(capacityLimits);
+            this.tileScheduler = null;
+            this.virtualScheduler = null;
+            LOG.info("Создание острова завершено (компактное хранилище)");
+            return;
+        }
+        this.compact = null;
+        if (sparseGrid) {
+            this.sparse = new SparseGrid(cols, numThreads, census, pool, vegetation, this::plantGrass);
+            this.grid = sparse;
+        } else {
+            this.sparse = null;
+            this.grid = new DenseGrid(rows, cols, census, pool, vegetation);
+        }
+        if (scheduler == StepScheduler.TILES) {
+            this.tileScheduler = new TileScheduler(this, (ForkJoinPool) executorService, settings.getTileSize());
+            this.virtualScheduler = null;
+            LOG.info("Создание острова завершено, плитки {}х{}", tileScheduler.getTileSize(), tileScheduler.getTileSize());
+        } else if (scheduler == StepScheduler.VIRTUAL) {
+            this.tileScheduler = null;
+            this.virtualScheduler = new VirtualThreadScheduler(this, pool, settings.getTileSize());
+            LOG.info("Создание острова завершено, виртуальные потоки на плитки {}х{}",
+                    virtualScheduler.getTileSize(), virtualScheduler.getTileSize());
+        } else {
+            this.tileScheduler = null;
+            this.virtualScheduler = null;
+            LOG.info("Создание острова завершено{}", sparseGrid ? " (разреженная сетка)" : "");
         }
-        LOG.info("Создание острова завершено");
     }
 
+    /**
+     * Заселяет остров животными и травой
+     * Строки острова делятся на полосы, которые заполняются параллельно в пуле острова;
+     * животные клетки заселяются одной пачкой под одной блокировкой, а счётчики острова
+     * обновляются один раз на полосу. В детерминированном режиме результат не зависит
+     * от числа потоков: каждая клетка разыгрывается своим потоком случайных чисел.
+     */
     public void populate() {
         LOG.info("Начинаем заселение острова животными и растениями");
-        for (int i = 0; i < rows; i++) {
+        long started = System.nanoTime();
+        if (compact == null) {
+            grassPlanted = true;
+            if (sparse != null) {
+                sparse.forEach(this::plantGrass);
+            }
+        }
+        int bands = Math.max(1, Math.min(rows, numThreads * POPULATE_BANDS_PER_THREAD));
+        int[][] compactBatches = new int[bands][];
+        List<Future<?>> futures = new ArrayList<>(bands);
+        for (int t = 0; t < bands; t++) {
+            int band = t;
+            int startRow = (int) ((long) t * rows / bands);
+            int endRow = (int) ((long) (t + 1) * rows / bands);
+            futures.add(executorService.submit(() -> {
+                compactBatches[band] = populateRows(startRow, endRow);
+            }));
+        }
+        StepTasks.awaitAll(futures);
+        if (compact != null) {
+            for (int[] batch : compactBatches) {
+                for (int k = 1; k < batch[0]; k += 2) {
+                    compact.add(speciesRegistry.get(batch[k]), batch[k + 1] / cols, batch[k + 1] % cols);
+                }
+            }
+        }
+        LOG.info("Заселение острова завершено за {} мс, животных: {}",
+                (System.nanoTime() - started) / 1_000_000, countAliveOrganisms());
+    }
+
+    /**
+     * Заселяет строки [startRow, endRow)
+     *
+     * @return для компактного хранилища — пачка особей: batch[0] — занятая длина,
+     * далее пары (номер вида, номер клетки) в порядке клеток; иначе null
+     */
+    private int[] populateRows(int startRow, int endRow) {
+        CellRandom cellRandom = new CellRandom();
+        int[] drawn = new int[8];
+        int[] batch = compact != null ? new int[1 + 2 * (endRow - startRow) * cols] : null;
+        if (batch != null) {
+            batch[0] = 1;
+        }
+        long[] added = new long[speciesRegistry.size()];
+        List<Organism> organisms = new ArrayList<>(drawn.length);
+        for (int i = startRow; i < endRow; i++) {
             for (int j = 0; j < cols; j++) {
-                Location location = locations[i][j];
-                boolean hasGrass = ThreadLocalRandom.current().nextBoolean();
-                if (hasGrass) {
-                    location.setGrass(new Grass(true));
-                } else {
-                    location.setGrass(null);
+                RandomGenerator random = populationRandom(cellRandom, i, j);
+                boolean hasGrass = random.nextBoolean();
+                drawn = drawCell(random, i, j, drawn);
+                int count = drawn[0];
+                if (compact != null) {
+                    compact.setGrass(i, j, hasGrass);
+                    if (batch.length < batch[0] + 2 * count) {
+                        batch = Arrays.copyOf(batch, Math.max(batch.length * 2, batch[0] + 2 * count));
+                    }
+                    for (int k = 1; k <= count; k++) {
+                        batch[batch[0]++] = drawn[k];
+                        batch[batch[0]++] = i * cols + j;
+                    }
+                    continue;
+                }
+                Location location = sparse == null || count > 0 ? grid.get(i, j) : null;
+                if (sparse == null) {
+                    location.setGrass(hasGrass ? new Grass(true) : null);
                 }
-                int herbivore = ThreadLocalRandom.current().nextInt(0, 3);
-                for (int k = 0; k < herbivore; k++) {
-                    location.addOrganism(AnimalFactory.randomHerbivore());
+                if (count == 0) {
+                    continue;
                 }
-                int predator = ThreadLocalRandom.current().nextInt(0, 2);
-                for (int k = 0; k < predator; k++) {
-                    location.addOrganism(AnimalFactory.randomPredator());
+                for (int k = 1; k <= count; k++) {
+                    organisms.add(speciesRegistry.get(drawn[k]).create());
+                    added[drawn[k]]++;
+                }
+                location.addOrganisms(organisms);
+                organisms.clear();
+            }
+        }
+        if (compact == null) {
+            for (int id = 0; id < added.length; id++) {
+                if (added[id] > 0) {
+                    census.changed(speciesRegistry.get(id), added[id]);
                 }
-                LOG.info("В локации по координатам {}, {} заселены: Трава={}, Травоядных={}, Хищников={}",
-                        i, j, hasGrass ? "да" : "нет", herbivore, predator);
             }
         }
-        LOG.info("Заселение острова завершено");
+        return batch;
+    }
+
+    /**
+     * Разыгрывает животных клетки: виды без распределения — 0–2 травоядных и 0–1 хищник
+     * случайных видов, виды с распределением — по ожидаемому числу в клетке
+     *
+     * @return массив, где drawn[0] — число животных, далее их номера видов;
+     * тот же drawn или увеличенная копия
+     */
+    private int[] drawCell(RandomGenerator random, int row, int col, int[] drawn) {
+        int count = 0;
+        int herbivore = random.nextInt(0, 3);
+        if (!populationHerbivores.isEmpty()) {
+            for (int k = 0; k < herbivore; k++) {
+                drawn[++count] = populationHerbivores.get(random.nextInt(0, populationHerbivores.size())).getId();
+            }
+        }
+        int predator = random.nextInt(0, 2);
+        if (!populationPredators.isEmpty()) {
+            for (int k = 0; k < predator; k++) {
+                drawn[++count] = populationPredators.get(random.nextInt(0, populationPredators.size())).getId();
+            }
+        }
+        for (Species species : densitySpecies) {
+            double expected = densities[species.getId()].expected(row, col);
+            int n = (int) expected;
+            if (n != expected && random.nextDouble() < expected - n) {
+                n++;
+            }
+            n = Math.min(n, species.getMaxPerCell());
+            if (drawn.length <= count + n) {
+                drawn = Arrays.copyOf(drawn, Math.max(drawn.length * 2, count + n + 1));
+            }
+            for (int k = 0; k < n; k++) {
+                drawn[++count] = species.getId();
+            }
+        }
+        drawn[0] = count;
+        return drawn;
+    }
+
+    /**
+     * Трава клетки разреженной сетки: выводится из координаты тем же розыгрышем,
+     * что и при заселении плотной сетки, поэтому пересозданная клетка получает ту же траву
+     */
+    private void plantGrass(Location location) {
+        if (grassPlanted) {
+            boolean hasGrass = grassAt(new CellRandom(), location.getRow(), location.getCol());
+            location.setGrass(hasGrass ? new Grass(true) : null);
+        }
+    }
+
+    private boolean grassAt(CellRandom random, int row, int col) {
+        return random.reseed(CellRandom.seedFor(grassSeed, POPULATE_STEP, (long) row * cols + col)).nextBoolean();
+    }
+
+    private void countCell(int row, int col, int[] counts) {
+        Location location = grid.get(row, col);
+        location.countAliveBySpecies(counts);
+        counts[densityField.getGrassChannel()] = location.hasFood() ? 1 : 0;
+    }
+
+    private RandomGenerator populationRandom(CellRandom cellRandom, int row, int col) {
+        if (!seeded) {
+            return ThreadLocalRandom.current();
+        }
+        return cellRandom.reseed(CellRandom.seedFor(seed, POPULATE_STEP, (long) row * cols + col));
     }
 
     public void simulateStep() {
+        long started = StepProfiler.start();
+        if (compact != null) {
+            StepProfiler.phase(StepPhase.PROCESS, compact.simulateStep(executorService, numThreads));
+        } else {
+            Location[] cells = sparse != null ? sparse.prepareStep() : null;
+            long sensed = buildDensityField(started);
+            if (tileScheduler != null) {
+                tileScheduler.run();
+            } else if (virtualScheduler != null) {
+                if (cells != null) {
+                    virtualScheduler.run(cells);
+                } else {
+                    virtualScheduler.run();
+                }
+            } else if (cells != null) {
+                processCells(cells);
+            } else {
+                processRowBands();
+            }
+            finishProcessing(StepProfiler.phase(StepPhase.PROCESS, sensed));
+        }
+        completeStep(started);
+    }
+
+    /**
+     * Выполняет до steps шагов подряд, останавливаясь раньше, если все животные вымерли
+     * <p>
+     * На плотной сетке с планировщиком ROW_BANDS шаги идут на постоянных потоках: каждый
+     * поток обрабатывает свою полосу строк, а потоки ждут друг друга на одном Phaser.
+     * Слияние перемещений, наблюдатели StepListener и подготовка следующего шага
+     * выполняются потоком, пришедшим к барьеру последним, поэтому между шагами нет
+     * постановки задач в пул и ожидания Future. В остальных режимах run вызывает
+     * simulateStep() в цикле; так же run работает с общим пулом (IslandSettings.setExecutor),
+     * чтобы не запускать собственных потоков.
+     * Наблюдатель observer получает сводку каждого шага асинхронно, в своём потоке и
+     * в порядке шагов, и не задерживает симуляцию. Метод возвращает управление, когда
+     * все шаги выполнены и все сводки доставлены.
+     *
+     * @param observer получатель сводок шагов; может быть null
+     * @return число выполненных шагов
+     */
+    public long run(long steps, StepObserver observer) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Число шагов не может быть отрицательным");
+        }
+        StepRunner runner = new StepRunner(this, pool, steps, observer);
+        if (ownsExecutor && compact == null && sparse == null && tileScheduler == null && virtualScheduler == null) {
+            return runner.runOnWorkers(Math.max(1, Math.min(numThreads, rows)));
+        }
+        return runner.runSequential();
+    }
+
+    /**
+     * Строит слой плотности перед обработкой клеток
+     *
+     * @return момент окончания построения для StepProfiler
+     */
+    long buildDensityField(long started) {
+        if (densityField == null) {
+            return started;
+        }
+        densityField.build(executorService, numThreads, this::countCell);
+        return StepProfiler.phase(StepPhase.SENSE, started);
+    }
+
+    /**
+     * Сливает отложенные перемещения и возвращает погибших в пул после обработки клеток
+     */
+    void finishProcessing(long processed) {
+        if (movementMode == MovementMode.BUFFERED) {
+            mergeMoves();
+            processed = StepProfiler.phase(StepPhase.MERGE, processed);
+        }
+        pool.recycle();
+        StepProfiler.phase(StepPhase.RECYCLE, processed);
+    }
+
+    /**
+     * Отращивает траву, увеличивает номер шага и оповещает наблюдателей
+     */
+    void completeStep(long started) {
+        if (vegetation != null) {
+            long grown = StepProfiler.start();
+            vegetation.regrow();
+            StepProfiler.phase(StepPhase.GROW, grown);
+        }
+        step++;
+        StepProfiler.stepCompleted(started);
+        for (StepListener listener : stepListeners) {
+            listener.onStepCompleted(this);
+        }
+    }
+
+    /**
+     * Обрабатывает строки [startRow, endRow) плотной сетки
+     */
+    void processRows(int startRow, int endRow) {
+        for (int i = startRow; i < endRow; i++) {
+            for (int j = 0; j < cols; j++) {
+                processLocation(grid.get(i, j));
+            }
+        }
+    }
+
+    private void processRowBands() {
         List<Future<?>> futures = new ArrayList<>();
         for (int t = 0; t < numThreads; t++) {
             int startRow = t * rows / numThreads;
             int endRow = (t + 1) * rows / numThreads;
+            long submitted = StepProfiler.start();
             Future<?> future = executorService.submit(() -> {
-                for (int i = startRow; i < endRow; i++) {
-                    for (int j = 0; j < cols; j++) {
-                        Location location = locations[i][j];
-                        processLocation(location);
-                    }
-                }
+                long taskStarted = StepProfiler.start();
+                processRows(startRow, endRow);
+                StepProfiler.task(submitted, taskStarted);
             });
             futures.add(future);
         }
-        for (Future<?> future : futures) {
-            try {
-                future.get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+        StepTasks.awaitAll(futures);
+    }
+
+    /**
+     * Обрабатывает занятые клетки разреженной сетки, разделив их на равные отрезки по числу потоков
+     */
+    private void processCells(Location[] cells) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int from = (int) ((long) t * cells.length / numThreads);
+            int to = (int) ((long) (t + 1) * cells.length / numThreads);
+            if (from == to) {
+                continue;
             }
+            long submitted = StepProfiler.start();
+            futures.add(executorService.submit(() -> {
+                long taskStarted = StepProfiler.start();
+                for (int i = from; i < to; i++) {
+                    processLocation(cells[i]);
+                }
+                StepProfiler.task(submitted, taskStarted);
+            }));
         }
+        StepTasks.awaitAll(futures);
     }
 
-    public int countAliveOrganisms() {
-        Map<String, Integer> map = new ConcurrentHashMap<>();
-        int count = 0;
+    /**
+     * Подписывает наблюдателя на завершение каждого шага
+     */
+    public void addStepListener(StepListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Наблюдатель шагов не может быть пустым");
+        }
+        stepListeners.add(listener);
+    }
+
+    public void removeStepListener(StepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    private void mergeMoves() {
+        if (sparse != null) {
+            for (Location location : sparse.getOccupied()) {
+                location.flushDepartures(capacityLimits);
+            }
+            return;
+        }
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
-                for (Organism o : locations[i][j].getOrganisms()) {
-                    if (o.isStatus()) {
-                        map.put(o.getName(), map.getOrDefault(o.getName(), 0) + 1);
-                        count++;
-                    }
+                grid.get(i, j).flushDepartures(capacityLimits);
+            }
+        }
+    }
+
+    /**
+     * Перемещает животное из локации в клетку с координатами newRow, newCol
+     * Перемещение за пределы острова игнорируется, если край не ведёт к соседу (setBoundary)
+     *
+     * @return true, если перемещение выполнено или поставлено в очередь
+     */
+    public boolean moveOrganism(Organism organism, Location location, int newRow, int newCol) {
+        if (newRow < 0 || newRow >= rows || newCol < 0 || newCol >= cols) {
+            return leaveIsland(organism, location, newRow, newCol);
+        }
+        int row = location.getRow();
+        int col = location.getCol();
+        Location newLocation = grid.get(newRow, newCol);
+        if (newLocation == location) {
+            return true;
+        }
+        if (movementMode == MovementMode.BUFFERED) {
+            location.depart(organism, newLocation);
+            SimulationEvents.move(organism.getSpecies().getId(), row, col, newRow, newCol);
+            return true;
+        }
+        if (tileScheduler != null) {
+            if (capacityLimits && !newLocation.hasRoom(organism.getSpecies())) {
+                return false;
+            }
+            location.transfer(organism, newLocation);
+            SimulationEvents.move(organism.getSpecies().getId(), row, col, newRow, newCol);
+            return true;
+        }
+        Location firstLocation, secondLocation;
+        if (newRow < row || (newRow == row && newCol < col)) {
+            firstLocation = newLocation;
+            secondLocation = location;
+        } else {
+            firstLocation = location;
+            secondLocation = newLocation;
+        }
+        boolean[] moved = new boolean[1];
+        firstLocation.withLock(() -> {
+            secondLocation.withLock(() -> {
+                if (location.holds(organism)
+                        && (!capacityLimits || newLocation.hasRoom(organism.getSpecies()))) {
+                    location.deleteOrganism(organism);
+                    newLocation.addOrganism(organism, newRow, newCol);
+                    moved[0] = true;
                 }
+            });
+        });
+        if (moved[0]) {
+            SimulationEvents.move(organism.getSpecies().getId(), row, col, newRow, newCol);
+        }
+        return moved[0];
+    }
+
+    private boolean leaveIsland(Organism organism, Location location, int newRow, int newCol) {
+        IslandBoundary boundary = this.boundary;
+        if (boundary == null || !boundary.accepts(newRow, newCol) || !location.emigrate(organism)) {
+            return false;
+        }
+        boundary.leave(organism, newRow, newCol);
+        SimulationEvents.move(organism.getSpecies().getId(), location.getRow(), location.getCol(), newRow, newCol);
+        return true;
+    }
+
+    /**
+     * Задаёт край острова, через который животные уходят к соседу; null — край непроходим
+     * Менять границу можно только между шагами
+     */
+    public void setBoundary(IslandBoundary boundary) {
+        if (boundary != null && grid == null) {
+            throw new IllegalStateException("Компактное хранилище не поддерживает выход животных за край острова");
+        }
+        if (boundary != null && densityField != null) {
+            throw new IllegalStateException("Направленное движение не выпускает животных за край острова");
+        }
+        this.boundary = boundary;
+    }
+
+    /**
+     * Число живых животных на острове за O(1), по счётчикам PopulationCensus
+     */
+    public int countAliveOrganisms() {
+        long started = StepProfiler.start();
+        int alive = (int) census.getTotal();
+        StepProfiler.phase(StepPhase.COUNT, started);
+        return alive;
+    }
+
+    public long countAliveOrganisms(Species species) {
+        return census.getCount(species);
+    }
+
+    public long countAliveOrganisms(OrganismType type) {
+        return census.getCount(type);
+    }
+
+    /**
+     * Виды животных, которыми заселяется остров
+     */
+    public SpeciesRegistry getSpeciesRegistry() {
+        return speciesRegistry;
+    }
+
+    /**
+     * Счётчики живых животных по видам и типам, обновляемые при рождении и смерти
+     */
+    public PopulationCensus getCensus() {
+        return census;
+    }
+
+    /**
+     * Слой плотности для направленного движения или null, если оно не включено в IslandSettings
+     */
+    public DensityField getDensityField() {
+        return densityField;
+    }
+
+    /**
+     * Слой растительности или null, если он не включён в IslandSettings
+     */
+    public Vegetation getVegetation() {
+        return vegetation;
+    }
+
+    /**
+     * Заселяет новое животное в клетку и учитывает его в счётчиках острова
+     *
+     * @return false, если клетка заполнена для вида животного (IslandSettings.setCapacityLimits);
+     * тогда животное не заселяется
+     */
+    public boolean addOrganism(Organism organism, int row, int col) {
+        if (grid == null) {
+            if (capacityLimits) {
+                return compact.tryAdd(organism.getSpecies(), row, col);
+            }
+            compact.add(organism.getSpecies(), row, col);
+            return true;
+        }
+        Location location = grid.get(row, col);
+        if (capacityLimits) {
+            if (!location.tryAddOrganism(organism, row, col)) {
+                return false;
             }
+        } else {
+            location.addOrganism(organism, row, col);
         }
-        return count;
+        census.born(organism.getSpecies());
+        return true;
     }
 
-    private void processLocation(Location location) {
-        List<Organism> snapshot = new ArrayList<>(location.getOrganisms());
-        for (Organism o : snapshot) {
-            o.liveOneCycle(this, location);
+    void processLocation(Location location) {
+        location.beginStep(step);
+        if (seeded) {
+            location.reseedRandom(CellRandom.seedFor(seed, step,
+                    (long) location.getRow() * cols + location.getCol()));
+        }
+        List<Organism> snapshot = snapshots.get();
+        location.copyOrganismsTo(snapshot);
+        if (!snapshot.isEmpty()) {
+            location.markDirty();
         }
+        StepProfiler.organisms(snapshot.size());
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            Organism organism = snapshot.get(i);
+            if (organism.isStatus()) {
+                organism.liveOneCycle(this, location);
+            }
+        }
+        snapshot.clear();
+        long started = StepProfiler.start();
         reproduceSpeciesInLocation(location);
+        StepProfiler.phase(StepPhase.REPRODUCE, started);
     }
 
+    /**
+     * Останавливает пул острова; общий пул из IslandSettings.setExecutor не останавливается
+     */
     public void shutdownExecutor() {
+        if (!ownsExecutor) {
+            return;
+        }
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS)) {
@@ -122,26 +700,108 @@ public class Island {
         }
     }
 
-    private void reproduceSpeciesInLocation(Location location) {
-        Map<String, List<Organism>> dataForReproduction = new HashMap<>();
-        for (Organism organism : new ArrayList<>(location.getOrganisms())) {
-            dataForReproduction
-                    .computeIfAbsent(organism.getName(), k -> new ArrayList<>())
-                    .add(organism);
-        }
-        for (List<Organism> group : new ArrayList<>(dataForReproduction.values())) {
-            int pairs = group.size() / 2;
-            for (int i = 0; i < pairs; i++) {
-                Organism baby = group.getFirst().createOffspring();
-                location.addOrganism(baby);
-                LOG.info("Родилось новое животное {} в локации {}, {}",
-                        baby.getName(), baby.getRow(), baby.getCol());
+    /**
+     * Каждая пара живых особей одного вида в клетке приносит одного детёныша
+     * Численность видов снимается одним проходом под блокировкой в переиспользуемый
+     * массив потока, детёныши заселяются в клетку одной пачкой, поэтому фаза не выделяет
+     * памяти, кроме самих детёнышей, когда пул пуст. Мёртвые животные к этому моменту уже
+     * убраны из клетки и в пары не попадают. С ограничением вместимости детёнышей рождается
+     * не больше, чем осталось мест для вида; подсчёт и заселение идут под одной блокировкой
+     * клетки, чтобы перемещения в неё не заняли эти места в промежутке.
+     */
+    void reproduceSpeciesInLocation(Location location) {
+        int[] adults = adultCounts.get();
+        List<Organism> born = newborns.get();
+        location.lockCell();
+        try {
+            location.countAliveBySpecies(adults);
+            for (int id = 0; id < adults.length; id++) {
+                int pairs = adults[id] / 2;
+                if (capacityLimits) {
+                    pairs = Math.min(pairs, location.room(id));
+                }
+                if (pairs == 0) {
+                    continue;
+                }
+                Species species = speciesRegistry.get(id);
+                for (int i = 0; i < pairs; i++) {
+                    born.add(pool.obtain(species));
+                }
+                census.changed(species, pairs);
             }
+            if (born.isEmpty()) {
+                return;
+            }
+            location.addNewborns(born);
+        } finally {
+            location.unlockCell();
+        }
+        for (int i = 0, n = born.size(); i < n; i++) {
+            SimulationEvents.birth(born.get(i).getSpecies().getId(), location.getRow(), location.getCol());
         }
+        born.clear();
     }
 
+    /**
+     * Локация клетки; в разреженной сетке создаётся при первом обращении
+     */
     public Location getLocation(int row, int col) {
-        return locations[row][col];
+        if (grid == null) {
+            throw new IllegalStateException("Компактное хранилище не содержит объектов Location");
+        }
+        return grid.get(row, col);
+    }
+
+    /**
+     * Обходит существующие локации: на плотной сетке все клетки построчно,
+     * на разреженной — только созданные, в произвольном порядке
+     * Вызывать между шагами
+     */
+    public void forEachLocation(Consumer<? super Location> action) {
+        if (grid == null) {
+            throw new IllegalStateException("Компактное хранилище не содержит объектов Location");
+        }
+        grid.forEach(action);
+    }
+
+    /**
+     * Число существующих локаций; на разреженной сетке — созданных клеток
+     */
+    public long countLocations() {
+        return grid == null ? 0 : grid.size();
+    }
+
+    /**
+     * Номер текущего шага симуляции, начиная с 0
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Устанавливает номер шага острова, восстановленного из снимка
+     */
+    public void restoreStep(long step) {
+        this.step = step;
+    }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * true, если популяция хранится в объектах Location (PopulationBackend.OBJECTS)
+     */
+    public boolean hasLocations() {
+        return grid != null;
+    }
+
+    public boolean isSparse() {
+        return sparse != null;
     }
 
     public int getRows() {
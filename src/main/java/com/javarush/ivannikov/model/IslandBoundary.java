@@ -0,0 +1,22 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Organism;
+
+/**
+ * Край острова, за которым продолжается мир: соседний регион в другом процессе
+ * Без границы перемещение за пределы острова игнорируется.
+ * Методы вызываются потоками шага параллельно.
+ */
+public interface IslandBoundary {
+
+    /**
+     * Может ли животное уйти в клетку за краем острова (координаты локальные)
+     */
+    boolean accepts(int newRow, int newCol);
+
+    /**
+     * Животное покинуло остров: оно уже убрано из клетки, но ещё учтено в счётчиках острова
+     * и до конца шага может погибнуть (например, от голода в той же фазе питания)
+     */
+    void leave(Organism organism, int newRow, int newCol);
+}
@@ -0,0 +1,281 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Параметры создания острова
+ * Значения по умолчанию соответствуют исходному поведению симуляции, кроме вместимости
+ * клеток: ограничение Species.getMaxPerCell включено (см. setCapacityLimits)
+ */
+public class IslandSettings {
+    private PopulationBackend backend = PopulationBackend.OBJECTS;
+    private MovementMode movementMode = MovementMode.LOCKED;
+    private StepScheduler scheduler = StepScheduler.ROW_BANDS;
+    private GridLayout gridLayout = GridLayout.DENSE;
+    private int tileSize = 16;
+    private int parallelism = Runtime.getRuntime().availableProcessors() + 2;
+    private Long seed;
+    private SpeciesRegistry speciesRegistry;
+    private final Map<String, PopulationDensity> densities = new LinkedHashMap<>();
+    private boolean capacityLimits = true;
+    private int sensingRadius;
+    private boolean vegetation;
+    private float vegetationCapacity;
+    private float vegetationRegrowth;
+    private float vegetationBite;
+    private ForkJoinPool executor;
+
+    /**
+     * Независимая копия настроек: изменения копии не затрагивают исходные
+     */
+    public IslandSettings copy() {
+        IslandSettings copy = new IslandSettings();
+        copy.backend = backend;
+        copy.movementMode = movementMode;
+        copy.scheduler = scheduler;
+        copy.gridLayout = gridLayout;
+        copy.tileSize = tileSize;
+        copy.parallelism = parallelism;
+        copy.seed = seed;
+        copy.speciesRegistry = speciesRegistry;
+        copy.densities.putAll(densities);
+        copy.capacityLimits = capacityLimits;
+        copy.sensingRadius = sensingRadius;
+        copy.vegetation = vegetation;
+        copy.vegetationCapacity = vegetationCapacity;
+        copy.vegetationRegrowth = vegetationRegrowth;
+        copy.vegetationBite = vegetationBite;
+        copy.executor = executor;
+        return copy;
+    }
+
+    public PopulationBackend getBackend() {
+        return backend;
+    }
+
+    public IslandSettings setBackend(PopulationBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Способ хранения популяции не может быть пустым");
+        }
+        this.backend = backend;
+        return this;
+    }
+
+    public MovementMode getMovementMode() {
+        return movementMode;
+    }
+
+    public IslandSettings setMovementMode(MovementMode movementMode) {
+        if (movementMode == null) {
+            throw new IllegalArgumentException("Способ перемещения не может быть пустым");
+        }
+        this.movementMode = movementMode;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Число потоков пула острова
+     */
+    public IslandSettings setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public boolean isSeeded() {
+        return seed != null;
+    }
+
+    public long getSeed() {
+        if (seed == null) {
+            throw new IllegalStateException("Seed не задан");
+        }
+        return seed;
+    }
+
+    /**
+     * Включает детерминированный режим: все случайные решения берутся из потоков,
+     * выведенных из seed, номера шага и номера клетки, поэтому прогон с одним seed
+     * даёт одинаковую динамику популяции при любом числе потоков.
+     * Перемещение в этом режиме всегда BUFFERED.
+     */
+    public IslandSettings setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public StepScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public IslandSettings setScheduler(StepScheduler scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Планировщик шага не может быть пустым");
+        }
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    public GridLayout getGridLayout() {
+        return gridLayout;
+    }
+
+    /**
+     * Способ хранения локаций; учитывается только для PopulationBackend.OBJECTS
+     * На разреженной сетке планировщик TILES заменяется на ROW_BANDS
+     */
+    public IslandSettings setGridLayout(GridLayout gridLayout) {
+        if (gridLayout == null) {
+            throw new IllegalArgumentException("Способ хранения локаций не может быть пустым");
+        }
+        this.gridLayout = gridLayout;
+        return this;
+    }
+
+    public SpeciesRegistry getSpeciesRegistry() {
+        return speciesRegistry != null ? speciesRegistry : SpeciesRegistry.getDefault();
+    }
+
+    /**
+     * Виды животных острова; по умолчанию — SpeciesRegistry.getDefault()
+     */
+    public IslandSettings setSpeciesRegistry(SpeciesRegistry speciesRegistry) {
+        if (speciesRegistry == null) {
+            throw new IllegalArgumentException("Реестр видов не может быть пустым");
+        }
+        this.speciesRegistry = speciesRegistry;
+        return this;
+    }
+
+    /**
+     * Распределения видов при заселении, ключ — Species.getKey()
+     */
+    public Map<String, PopulationDensity> getDensities() {
+        return Collections.unmodifiableMap(densities);
+    }
+
+    /**
+     * Задаёт распределение вида при заселении
+     * Виды без распределения заселяются как раньше: в каждую клетку 0–2 травоядных
+     * и 0–1 хищник случайных видов своего типа.
+     *
+     * @param speciesKey ключ вида из реестра видов
+     */
+    public IslandSettings setDensity(String speciesKey, PopulationDensity density) {
+        if (speciesKey == null || density == null) {
+            throw new IllegalArgumentException("Вид и распределение не могут быть пустыми");
+        }
+        densities.put(speciesKey, density);
+        return this;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Сторона плитки для планировщиков TILES и VIRTUAL
+     * Для TILES фактический размер не меньше удвоенной максимальной скорости животных
+     */
+    public IslandSettings setTileSize(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Размер плитки должен быть положительным");
+        }
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    public boolean hasVegetation() {
+        return vegetation;
+    }
+
+    public float getVegetationCapacity() {
+        return vegetationCapacity;
+    }
+
+    public float getVegetationRegrowth() {
+        return vegetationRegrowth;
+    }
+
+    public float getVegetationBite() {
+        return vegetationBite;
+    }
+
+    /**
+     * Включает слой растительности (Vegetation): трава каждой клетки начинает с capacity,
+     * травоядное съедает bite за удачное питание, за шаг клетка отрастает на regrowth.
+     * Без слоя травоядные едят траву клетки, которая не убывает.
+     */
+    public IslandSettings setVegetation(float capacity, float regrowth, float bite) {
+        if (!(capacity > 0) || !(regrowth >= 0) || !(bite > 0) || bite > capacity) {
+            throw new IllegalArgumentException("Запас травы и порция должны быть положительными, "
+                    + "порция не больше запаса, прирост неотрицательным");
+        }
+        this.vegetation = true;
+        this.vegetationCapacity = capacity;
+        this.vegetationRegrowth = regrowth;
+        this.vegetationBite = bite;
+        return this;
+    }
+
+    public int getSensingRadius() {
+        return sensingRadius;
+    }
+
+    /**
+     * Включает направленное движение (DensityField): хищники идут к добыче, травоядные —
+     * к траве, которую чувствуют в радиусе radius; 0 — случайное движение, как раньше.
+     * На разреженной сетке не поддерживается и отключается.
+     */
+    public IslandSettings setSensingRadius(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Радиус чувствительности не может быть отрицательным");
+        }
+        this.sensingRadius = radius;
+        return this;
+    }
+
+    public boolean hasCapacityLimits() {
+        return capacityLimits;
+    }
+
+    /**
+     * Ограничивает число особей вида в клетке значением Species.getMaxPerCell:
+     * перемещение в заполненную клетку не выполняется, детёнышей рождается не больше,
+     * чем осталось мест, addOrganism отказывает. Включено по умолчанию; false возвращает
+     * прежнее поведение без ограничений.
+     */
+    public IslandSettings setCapacityLimits(boolean capacityLimits) {
+        this.capacityLimits = capacityLimits;
+        return this;
+    }
+
+    public ForkJoinPool getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Общий пул, в котором остров выполняет свои задачи вместо собственного
+     * Остров не владеет таким пулом: shutdownExecutor его не останавливает, а run
+     * выполняет шаги в вызывающем потоке, не запуская своих потоков. Планировщик
+     * VIRTUAL с общим пулом заменяется на ROW_BANDS.
+     */
+    public IslandSettings setExecutor(ForkJoinPool executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Пул потоков не может быть пустым");
+        }
+        this.executor = executor;
+        return this;
+    }
+}
@@ -2,25 +2,94 @@ package com.javarush.ivannikov.model;
 
 import com.javarush.ivannikov.entity.Grass;
 import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.metrics.StepProfiler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 
+/**
+ * Клетка острова
+ * Живые животные хранятся в трёх индексах: общем, по типу и по виду.
+ * Удаление из всех индексов — O(1) перестановкой последнего элемента,
+ * мёртвое животное убирается из клетки сразу в markDead.
+ * Методы обхода (forEach, forEachAlive, countAlive, pickRandomAlive) не копируют список
+ * животных и выполняются под блокировкой локации: параллельные перемещения в клетку
+ * ждут окончания обхода, и обход видит согласованный состав клетки.
+ * Действие, переданное в обход, не должно добавлять или удалять животных этой
+ * локации; если состав меняется по ходу (животные уходят), сначала скопируйте его
+ * в переиспользуемый буфер через copyOrganismsTo.
+ */
 public class Location {
+    private static final int ALL = 0;
+    private static final int BY_TYPE = 1;
+    private static final int BY_SPECIES = 2;
+
     private final ReentrantLock lock = new ReentrantLock();
-    private final List<Organism> organisms = new ArrayList<>();
+    private final OrganismBucket organisms = new OrganismBucket(ALL);
+    private final OrganismBucket[] byType = new OrganismBucket[OrganismType.values().length];
+    private final OrganismBucket[] bySpecies;
+    private final List<Organism> departures = new ArrayList<>();
+    private final List<Location> destinations = new ArrayList<>();
     private Grass grass;
+    private CellRandom random;
+    private boolean dirty;
+    private final SpeciesRegistry registry;
+    private final int[] departing;
+    private final int[] births;
+    private final int[] deaths;
+    private long eventsStep = -1;
+    private final PopulationCensus census;
+    private final OrganismPool pool;
+    private final Vegetation vegetation;
     private final int row;
     private final int col;
 
     public Location(int row, int col) {
+        this(row, col, null, null);
+    }
+
+    /**
+     * @param census счётчики острова, которые уменьшаются при смерти животного в этой клетке;
+     *               может быть null для локации вне острова, тогда виды берутся из реестра по умолчанию
+     * @param pool   пул, куда попадают погибшие животные; может быть null
+     */
+    public Location(int row, int col, PopulationCensus census, OrganismPool pool) {
+        this(row, col, census, pool, null);
+    }
+
+    /**
+     * @param vegetation слой растительности острова; если null, травоядные едят траву клетки (Grass)
+     */
+    public Location(int row, int col, PopulationCensus census, OrganismPool pool, Vegetation vegetation) {
         this.row = row;
         this.col = col;
+        this.census = census;
+        this.pool = pool;
+        this.vegetation = vegetation;
+        this.registry = census != null ? census.getRegistry() : SpeciesRegistry.getDefault();
+        int species = registry.size();
+        this.bySpecies = new OrganismBucket[species];
+        this.departing = new int[species];
+        this.births = new int[species];
+        this.deaths = new int[species];
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new OrganismBucket(BY_TYPE);
+        }
+        for (int i = 0; i < bySpecies.length; i++) {
+            bySpecies[i] = new OrganismBucket(BY_SPECIES);
+        }
     }
 
     public void withLock(Runnable action) {
-        lock.lock();
+        acquire(lock);
         try {
             action.run();
         } finally {
@@ -28,27 +97,485 @@ public class Location {
         }
     }
 
+    /**
+     * Захватывает блокировку; при включённом профилировании сначала пробует tryLock,
+     * и только если блокировка занята, замеряет время ожидания
+     */
+    private static void acquire(ReentrantLock lock) {
+        if (!StepProfiler.ENABLED) {
+            lock.lock();
+            return;
+        }
+        if (lock.tryLock()) {
+            StepProfiler.lockAcquired(0);
+            return;
+        }
+        long started = System.nanoTime();
+        lock.lock();
+        StepProfiler.lockAcquired(Math.max(System.nanoTime() - started, 1));
+    }
+
     public void addOrganism(Organism organism) {
-        this.withLock(() -> organisms.add(organism));
+        this.withLock(() -> insert(organism));
     }
 
     public void addOrganism(Organism organism, int row, int col) {
         this.withLock(() -> {
             organism.setCoordinates(row, col);
-            organisms.add(organism);
+            insert(organism);
         });
     }
 
+    /**
+     * Помечает животное мёртвым, уменьшает счётчики острова и сразу убирает
+     * животное из индексов локации, где оно сейчас находится
+     * Повторный вызов для уже мёртвого животного ничего не делает.
+     * Животные должны умирать только через этот метод, иначе счётчики разойдутся.
+     * Смерть засчитывается этой локации, поэтому вызывать его должен поток, обрабатывающий её.
+     */
+    public void markDead(Organism organism) {
+        if (!organism.die()) {
+            return;
+        }
+        deaths[organism.getSpecies().getId()]++;
+        if (census != null) {
+            census.died(organism.getSpecies());
+        }
+        if (pool != null) {
+            pool.bury(organism);
+        }
+        while (true) {
+            Location home = organism.getHome();
+            if (home == null) {
+                return;
+            }
+            acquire(home.lock);
+            try {
+                if (organism.getHome() == home) {
+                    home.remove(organism);
+                    return;
+                }
+            } finally {
+                home.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Убирает из локации животных, помеченных мёртвыми в обход markDead
+     */
     public void deleteOrganism() {
-        this.withLock(() -> organisms.removeIf(organism -> !organism.isStatus()));
+        this.withLock(() -> {
+            for (int i = organisms.size() - 1; i >= 0; i--) {
+                Organism organism = organisms.get(i);
+                if (!organism.isStatus()) {
+                    remove(organism);
+                }
+            }
+        });
     }
 
     public void deleteOrganism(Organism organism) {
-        this.withLock(() -> organisms.remove(organism));
+        this.withLock(() -> {
+            if (organism.getHome() == this) {
+                remove(organism);
+            }
+        });
+    }
+
+    /**
+     * Проверяет, что животное живо и находится в этой локации
+     * Вызывать под блокировкой локации
+     */
+    boolean holds(Organism organism) {
+        return organism.getHome() == this && organism.isStatus();
+    }
+
+    /**
+     * Убирает живое животное из локации, когда оно уходит за край острова
+     *
+     * @return false, если животное уже не в этой локации или мертво
+     */
+    boolean emigrate(Organism organism) {
+        acquire(lock);
+        try {
+            if (!holds(organism)) {
+                return false;
+            }
+            remove(organism);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Убирает животное из локации и ставит его в очередь на перемещение
+     * Вызывается только потоком, который обрабатывает эту локацию, поэтому без блокировки
+     */
+    void depart(Organism organism, Location destination) {
+        remove(organism);
+        departing[organism.getSpecies().getId()]++;
+        departures.add(organism);
+        destinations.add(destination);
+    }
+
+    /**
+     * Переносит животных из очереди в локации назначения и очищает очередь
+     * Животные, погибшие в пути, в новую клетку не попадают.
+     * Вызывается в фазе слияния, когда остальные потоки не работают с локациями
+     *
+     * @param capped если в клетке назначения нет места для вида, животное остаётся здесь;
+     *               его место в этой клетке было зарезервировано при уходе
+     */
+    void flushDepartures(boolean capped) {
+        for (int i = 0; i < departures.size(); i++) {
+            Location destination = destinations.get(i);
+            Organism organism = departures.get(i);
+            departing[organism.getSpecies().getId()]--;
+            if (!organism.isStatus()) {
+                continue;
+            }
+            if (capped && !destination.hasRoom(organism.getSpecies())) {
+                insert(organism);
+                continue;
+            }
+            organism.setCoordinates(destination.row, destination.col);
+            destination.insert(organism);
+        }
+        departures.clear();
+        destinations.clear();
+    }
+
+    /**
+     * Переносит животное в другую локацию без блокировок
+     * Допустимо, только если планировщик гарантирует, что обе локации
+     * обрабатывает один поток (см. TileScheduler)
+     */
+    void transfer(Organism organism, Location destination) {
+        remove(organism);
+        organism.setCoordinates(destination.row, destination.col);
+        destination.insert(organism);
     }
 
+    /**
+     * Есть ли в клетке место ещё для одной особи вида (Species.getMaxPerCell)
+     * Ушедшие в этом шаге и ещё не слитые особи занимают свои места до слияния,
+     * потому что могут вернуться. Вызывать под блокировкой локации или когда
+     * клетку не меняют другие потоки.
+     */
+    boolean hasRoom(Species species) {
+        return room(species.getId()) > 0;
+    }
+
+    /**
+     * Сколько ещё особей вида помещается в клетку
+     */
+    int room(int speciesId) {
+        return Math.max(0, registry.get(speciesId).getMaxPerCell()
+                - bySpecies[speciesId].size() - departing[speciesId]);
+    }
+
+    /**
+     * Заселяет животное, только если для его вида есть место
+     *
+     * @return false, если клетка заполнена
+     */
+    boolean tryAddOrganism(Organism organism, int row, int col) {
+        acquire(lock);
+        try {
+            if (!hasRoom(organism.getSpecies())) {
+                return false;
+            }
+            organism.setCoordinates(row, col);
+            insert(organism);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокировка клетки на несколько операций подряд (подсчёт и заселение детёнышей);
+     * вложенные методы локации берут ту же блокировку повторно
+     */
+    void lockCell() {
+        acquire(lock);
+    }
+
+    void unlockCell() {
+        lock.unlock();
+    }
+
+    private void insert(Organism organism) {
+        dirty = true;
+        organisms.add(organism);
+        byType[organism.getType().ordinal()].add(organism);
+        bySpecies[organism.getSpecies().getId()].add(organism);
+        organism.setHome(this);
+    }
+
+    private void remove(Organism organism) {
+        dirty = true;
+        organisms.remove(organism);
+        byType[organism.getType().ordinal()].remove(organism);
+        bySpecies[organism.getSpecies().getId()].remove(organism);
+        organism.setHome(null);
+    }
+
+    /**
+     * Заселяет детёнышей в клетку за одну блокировку и засчитывает их рождения этой клетке
+     * Вызывается потоком, который обрабатывает клетку
+     */
+    void addNewborns(List<Organism> newborns) {
+        insertAll(newborns, true);
+    }
+
+    /**
+     * Заселяет пачку животных при заселении острова: одна блокировка и одно расширение массива
+     */
+    void addOrganisms(List<Organism> organisms) {
+        insertAll(organisms, false);
+    }
+
+    private void insertAll(List<Organism> added, boolean births) {
+        acquire(lock);
+        try {
+            organisms.ensureCapacity(organisms.size() + added.size());
+            for (int i = 0, n = added.size(); i < n; i++) {
+                Organism organism = added.get(i);
+                organism.setCoordinates(row, col);
+                insert(organism);
+                if (births) {
+                    this.births[organism.getSpecies().getId()]++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает в counts число живых животных каждого вида, индекс — Species.getId()
+     * Все виды считаются под одной блокировкой, поэтому значения согласованы между собой
+     */
+    public void countAliveBySpecies(int[] counts) {
+        acquire(lock);
+        try {
+            for (int i = 0; i < bySpecies.length; i++) {
+                counts[i] = bySpecies[i].size();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Начинает учёт рождений и смертей шага step; вызывается перед обработкой клетки
+     */
+    void beginStep(long step) {
+        if (eventsStep != step) {
+            Arrays.fill(births, 0);
+            Arrays.fill(deaths, 0);
+            eventsStep = step;
+        }
+    }
+
+    /**
+     * Число рождений вида в этой клетке за шаг step
+     * Смерти считаются в клетке, где они произошли (markDead), рождения — в клетке
+     * размножения; клетка, не обрабатывавшаяся на шаге step, возвращает 0.
+     * Читать между шагами симуляции
+     */
+    public int getBirths(Species species, long step) {
+        return eventsStep == step ? births[species.getId()] : 0;
+    }
+
+    public int getDeaths(Species species, long step) {
+        return eventsStep == step ? deaths[species.getId()] : 0;
+    }
+
+    public int size() {
+        return organisms.size();
+    }
+
+    /**
+     * Признак того, что состав клетки или состояние её животных менялись
+     * с последнего вызова clearDirty(); используется инкрементальным снимком
+     * Читать между шагами симуляции
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void clearDirty() {
+        dirty = false;
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Копия списка животных; на горячем пути используйте методы обхода или copyOrganismsTo
+     */
     public List<Organism> getOrganisms() {
-        return new ArrayList<>(organisms);
+        List<Organism> copy = new ArrayList<>(organisms.size());
+        copyOrganismsTo(copy);
+        return copy;
+    }
+
+    /**
+     * Очищает target и копирует в него животных клетки без выделения памяти,
+     * если ёмкости буфера достаточно
+     */
+    public void copyOrganismsTo(List<Organism> target) {
+        acquire(lock);
+        try {
+            target.clear();
+            for (int i = 0, n = organisms.size(); i < n; i++) {
+                target.add(organisms.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forEach(Consumer<? super Organism> action) {
+        acquire(lock);
+        try {
+            forEachIn(organisms, action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Обходит только живых животных указанного типа
+     */
+    public void forEachAlive(OrganismType type, Consumer<? super Organism> action) {
+        acquire(lock);
+        try {
+            forEachIn(byType[type.ordinal()], action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forEachAlive(Species species, Consumer<? super Organism> action) {
+        acquire(lock);
+        try {
+            forEachIn(bySpecies[species.getId()], action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void forEachIn(OrganismBucket bucket, Consumer<? super Organism> action) {
+        for (int i = 0, n = bucket.size(); i < n; i++) {
+            action.accept(bucket.get(i));
+        }
+    }
+
+    /**
+     * Число живых животных типа за O(1); без блокировки, значение может
+     * устареть, если в клетку параллельно перемещаются животные
+     */
+    public int countAlive(OrganismType type) {
+        return byType[type.ordinal()].size();
+    }
+
+    public int countAlive(Species species) {
+        return bySpecies[species.getId()].size();
+    }
+
+    /**
+     * Выбирает случайное живое животное указанного типа за O(1)
+     *
+     * @return животное или null, если в клетке нет живых животных этого типа
+     */
+    public Organism pickRandomAlive(OrganismType type, RandomGenerator random) {
+        return pickRandom(byType[type.ordinal()], random);
+    }
+
+    public Organism pickRandomAlive(Species species, RandomGenerator random) {
+        return pickRandom(bySpecies[species.getId()], random);
+    }
+
+    /**
+     * Выбирает случайное живое животное среди нескольких видов; все особи равновероятны
+     *
+     * @param speciesIds номера видов, например добыча хищника
+     * @return животное или null, если в клетке нет живых животных этих видов
+     */
+    public Organism pickRandomAlive(int[] speciesIds, RandomGenerator random) {
+        return pickRandomAlive(speciesIds, null, random);
+    }
+
+    /**
+     * Как pickRandomAlive(speciesIds, random), но никогда не выбирает except:
+     * охотник, который ест особей своего вида, не съест сам себя
+     *
+     * @param except животное, которое нельзя выбрать; может быть null
+     */
+    public Organism pickRandomAlive(int[] speciesIds, Organism except, RandomGenerator random) {
+        acquire(lock);
+        try {
+            int alive = 0;
+            boolean excluded = false;
+            for (int id : speciesIds) {
+                alive += bySpecies[id].size();
+                excluded |= except != null && except.getHome() == this && except.getSpecies().getId() == id;
+            }
+            if (excluded) {
+                alive--;
+            }
+            if (alive <= 0) {
+                return null;
+            }
+            Organism picked = organismAt(speciesIds, random.nextInt(alive));
+            // на место исключённого встаёт последняя особь, так что остальные равновероятны
+            return picked == except ? organismAt(speciesIds, alive) : picked;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Organism organismAt(int[] speciesIds, int index) {
+        for (int id : speciesIds) {
+            OrganismBucket bucket = bySpecies[id];
+            if (index < bucket.size()) {
+                return bucket.get(index);
+            }
+            index -= bucket.size();
+        }
+        return null;
+    }
+
+    private Organism pickRandom(OrganismBucket bucket, RandomGenerator random) {
+        acquire(lock);
+        try {
+            int alive = bucket.size();
+            return alive == 0 ? null : bucket.get(random.nextInt(alive));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Источник случайных чисел для животных этой клетки
+     * В детерминированном режиме это поток клетки, заново инициализируемый
+     * на каждом шаге, иначе ThreadLocalRandom текущего потока
+     */
+    public RandomGenerator getRandom() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    void reseedRandom(long seed) {
+        if (random == null) {
+            random = new CellRandom();
+        }
+        random.reseed(seed);
     }
 
     public Grass getGrass() {
@@ -59,6 +586,24 @@ public class Location {
         this.grass = grass;
     }
 
+    /**
+     * Травоядное пытается поесть травы в клетке
+     * Со слоем растительности съедается порция биомассы клетки, без него трава
+     * клетки не убывает. Вызывается потоком, который обрабатывает клетку.
+     *
+     * @return true, если трава была и травоядное поело
+     */
+    public boolean graze() {
+        return vegetation != null ? vegetation.graze(row, col) : grass != null;
+    }
+
+    /**
+     * Есть ли в клетке трава, которую может съесть травоядное
+     */
+    public boolean hasFood() {
+        return vegetation != null ? vegetation.hasFood(row, col) : grass != null;
+    }
+
     public int getRow() {
         return row;
     }
@@ -0,0 +1,210 @@
+package com.javarush.ivannikov.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Хеш-таблица локаций по упакованной координате (row * cols + col) без обёрток Long
+ * Открытая адресация с линейным пробированием; таблица разбита на сегменты со своими
+ * блокировками, поэтому потоки шага, создающие клетки в разных сегментах, не мешают друг другу.
+ * Поиск существующей клетки идёт без блокировки: ссылка на локацию публикуется через
+ * release-запись, а промах перепроверяется под блокировкой сегмента.
+ * Удаление выполняется только между шагами, когда таблицу никто не читает.
+ */
+final class LocationMap {
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Location[].class);
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Создаёт локацию для ключа, которого ещё нет в таблице
+     */
+    interface CellFactory {
+        Location create(long key);
+    }
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final CellFactory factory;
+
+    LocationMap(int concurrency, CellFactory factory) {
+        int count = Integer.highestOneBit(Math.max(concurrency * 4 - 1, 1)) << 1;
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        this.factory = factory;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    Location get(long key) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        Location found = lookup(segment.table, key, hash);
+        if (found != null) {
+            return found;
+        }
+        segment.lock.lock();
+        try {
+            return lookup(segment.table, key, hash);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    Location getOrCreate(long key) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        Location found = lookup(segment.table, key, hash);
+        if (found != null) {
+            return found;
+        }
+        segment.lock.lock();
+        try {
+            found = lookup(segment.table, key, hash);
+            if (found != null) {
+                return found;
+            }
+            if ((segment.size + 1) * 2 > segment.table.keys.length) {
+                segment.table = segment.table.resized(segment.table.keys.length * 2);
+            }
+            Location created = factory.create(key);
+            segment.table.insert(key, hash, created);
+            segment.size++;
+            return created;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет локацию; вызывать только между шагами
+     */
+    void remove(long key) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        if (segment.table.delete(key, hash)) {
+            segment.size--;
+            int capacity = segment.table.keys.length;
+            if (capacity > INITIAL_CAPACITY && segment.size * 8 < capacity) {
+                segment.table = segment.table.resized(capacity / 2);
+            }
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    void forEach(Consumer<? super Location> action) {
+        for (Segment segment : segments) {
+            Location[] values = segment.table.values;
+            for (Location location : values) {
+                if (location != null) {
+                    action.accept(location);
+                }
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    private static Location lookup(Table table, long key, long hash) {
+        int mask = table.keys.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long current = table.keys[i];
+            if (current == key) {
+                return (Location) VALUES.getAcquire(table.values, i);
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Финализатор MurmurHash3: соседние клетки попадают в разные сегменты и слоты
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        private int size;
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final Location[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Location[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private void insert(long key, long hash, Location location) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            VALUES.setRelease(values, i, location);
+            keys[i] = key;
+        }
+
+        /**
+         * Удаление со сдвигом: следующие записи цепочки подтягиваются в освободившийся
+         * слот, чтобы поиск не обрывался на дыре
+         */
+        private boolean delete(long key, long hash) {
+            int mask = keys.length - 1;
+            int hole = (int) hash & mask;
+            while (keys[hole] != key) {
+                if (keys[hole] == EMPTY) {
+                    return false;
+                }
+                hole = (hole + 1) & mask;
+            }
+            for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                int home = (int) mix(keys[i]) & mask;
+                boolean stays = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+                if (!stays) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = EMPTY;
+            values[hole] = null;
+            return true;
+        }
+
+        private Table resized(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    resized.insert(keys[i], mix(keys[i]), values[i]);
+                }
+            }
+            return resized;
+        }
+    }
+}
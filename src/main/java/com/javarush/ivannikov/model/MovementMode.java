@@ -0,0 +1,12 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Способ перемещения животных между локациями за шаг
+ * LOCKED - животное сразу переносится под блокировками обеих локаций
+ * BUFFERED - перемещение записывается в очередь исходной локации без блокировок,
+ *            а после обработки всех локаций применяется фазой слияния
+ */
+public enum MovementMode {
+    LOCKED,
+    BUFFERED,
+}
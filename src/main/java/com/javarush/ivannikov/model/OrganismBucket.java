@@ -0,0 +1,63 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Organism;
+
+import java.util.Arrays;
+
+/**
+ * Массив животных с удалением за O(1)
+ * Каждое животное хранит свою позицию в корзине (Organism.getSlot(slotIndex)),
+ * поэтому удаление переставляет на его место последний элемент и не ищет по массиву.
+ * Порядок элементов после удаления меняется, но остаётся детерминированным.
+ * Когда заполнено меньше четверти массива, он уменьшается вдвое, так что
+ * память клетки следует за числом живых животных.
+ */
+final class OrganismBucket {
+    private static final Organism[] EMPTY = new Organism[0];
+    private static final int MIN_SHRINK_CAPACITY = 16;
+
+    private final int slotIndex;
+    private Organism[] items = EMPTY;
+    private int size;
+
+    OrganismBucket(int slotIndex) {
+        this.slotIndex = slotIndex;
+    }
+
+    void add(Organism organism) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, Math.max(4, size * 2));
+        }
+        organism.setSlot(slotIndex, size);
+        items[size++] = organism;
+    }
+
+    /**
+     * Расширяет массив заранее, чтобы вместить capacity животных без промежуточных копий
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            items = Arrays.copyOf(items, capacity);
+        }
+    }
+
+    void remove(Organism organism) {
+        int slot = organism.getSlot(slotIndex);
+        Organism last = items[--size];
+        items[slot] = last;
+        last.setSlot(slotIndex, slot);
+        items[size] = null;
+        organism.setSlot(slotIndex, -1);
+        if (items.length > MIN_SHRINK_CAPACITY && size < items.length >>> 2) {
+            items = Arrays.copyOf(items, items.length >>> 1);
+        }
+    }
+
+    Organism get(int index) {
+        return items[index];
+    }
+
+    int size() {
+        return size;
+    }
+}
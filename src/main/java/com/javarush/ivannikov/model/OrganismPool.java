@@ -0,0 +1,136 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Пул погибших животных для повторного использования при рождении
+ * Погибшее животное сначала попадает на «кладбище» потока, в котором умерло:
+ * до конца шага на него ещё могут ссылаться снимки клеток и очереди перемещений.
+ * В фазе уплотнения (recycle) в конце шага кладбища переходят в свободные списки,
+ * и следующие рождения в этом потоке берут экземпляры оттуда вместо new.
+ * У каждого потока своя доля пула, поэтому синхронизация не нужна.
+ * Короткоживущие (виртуальные) потоки берут долю взаймы через attach()/detach(),
+ * иначе число долей росло бы с каждым новым потоком.
+ */
+public class OrganismPool {
+    private static final int MAX_FREE_PER_SPECIES = 1 << 16;
+
+    private final int speciesCount;
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Shard> shard;
+    private final Queue<Shard> idle = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Shard> borrowed = new ThreadLocal<>();
+
+    public OrganismPool() {
+        this(SpeciesRegistry.getDefault());
+    }
+
+    public OrganismPool(SpeciesRegistry registry) {
+        this.speciesCount = registry.size();
+        this.shard = ThreadLocal.withInitial(() -> {
+            Shard created = new Shard(speciesCount);
+            shards.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * Привязывает к текущему потоку свободную долю пула до вызова detach()
+     */
+    void attach() {
+        Shard free = idle.poll();
+        if (free == null) {
+            free = new Shard(speciesCount);
+            shards.add(free);
+        }
+        borrowed.set(free);
+        shard.set(free);
+    }
+
+    void detach() {
+        Shard free = borrowed.get();
+        if (free == null) {
+            return;
+        }
+        borrowed.remove();
+        shard.remove();
+        idle.add(free);
+    }
+
+    /**
+     * Запоминает погибшее животное; вызывается из Location.markDead
+     */
+    public void bury(Organism organism) {
+        shard.get().graveyard[organism.getSpecies().getId()].add(organism);
+    }
+
+    /**
+     * Возвращает новорождённое животное вида species:
+     * переиспользованный экземпляр с начальными параметрами или новый объект
+     */
+    public Organism obtain(Species species) {
+        List<Organism> free = shard.get().free[species.getId()];
+        if (free.isEmpty()) {
+            return species.create();
+        }
+        Organism organism = free.removeLast();
+        organism.reset();
+        return organism;
+    }
+
+    /**
+     * Фаза уплотнения: переводит погибших за шаг животных в свободные списки
+     * Вызывается одним потоком между шагами, когда задачи шага завершены
+     */
+    public void recycle() {
+        for (Shard s : shards) {
+            for (int i = 0; i < s.free.length; i++) {
+                List<Organism> graveyard = s.graveyard[i];
+                List<Organism> free = s.free[i];
+                int room = MAX_FREE_PER_SPECIES - free.size();
+                for (int k = 0, n = Math.min(room, graveyard.size()); k < n; k++) {
+                    free.add(graveyard.get(k));
+                }
+                graveyard.clear();
+            }
+        }
+    }
+
+    /**
+     * Число свободных экземпляров вида во всех долях пула
+     */
+    public int countFree(Species species) {
+        int count = 0;
+        for (Shard s : shards) {
+            count += s.free[species.getId()].size();
+        }
+        return count;
+    }
+
+    private static final class Shard {
+        private final List<Organism>[] graveyard;
+        private final List<Organism>[] free;
+
+        private Shard(int species) {
+            this.graveyard = newLists(species);
+            this.free = newLists(species);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static List<Organism>[] newLists(int species) {
+            List<Organism>[] lists = new List[species];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = new ArrayList<>();
+            }
+            return lists;
+        }
+    }
+}
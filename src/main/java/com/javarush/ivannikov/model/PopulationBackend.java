@@ -0,0 +1,11 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Способ хранения популяции острова
+ * OBJECTS - каждая особь является объектом Organism в списке своей локации
+ * COMPACT - особи хранятся в примитивных массивах по видам (см. CompactPopulation)
+ */
+public enum PopulationBackend {
+    OBJECTS,
+    COMPACT,
+}
@@ -0,0 +1,90 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.OrganismType;
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики живых животных острова по видам и типам
+ * Обновляются в момент рождения и смерти, поэтому узнать численность
+ * можно за O(1), не обходя клетки. LongAdder распределяет запись по
+ * ячейкам, так что потоки шага не соперничают за один счётчик.
+ * Перемещение численность не меняет и счётчики не трогает.
+ */
+public class PopulationCensus {
+    private final SpeciesRegistry registry;
+    private final OrganismType[] speciesTypes;
+    private final LongAdder[] bySpecies;
+    private final LongAdder[] byType = new LongAdder[OrganismType.values().length];
+    private final LongAdder total = new LongAdder();
+
+    public PopulationCensus() {
+        this(SpeciesRegistry.getDefault());
+    }
+
+    public PopulationCensus(SpeciesRegistry registry) {
+        this.registry = registry;
+        this.speciesTypes = new OrganismType[registry.size()];
+        this.bySpecies = new LongAdder[registry.size()];
+        for (Species species : registry.all()) {
+            speciesTypes[species.getId()] = species.getType();
+        }
+        for (int i = 0; i < bySpecies.length; i++) {
+            bySpecies[i] = new LongAdder();
+        }
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Реестр видов, по номерам которых ведутся счётчики
+     */
+    public SpeciesRegistry getRegistry() {
+        return registry;
+    }
+
+    public void born(Species species) {
+        changed(species, 1);
+    }
+
+    public void died(Species species) {
+        changed(species, -1);
+    }
+
+    /**
+     * Изменяет численность вида сразу на delta особей
+     * Используется компактным хранилищем, которое считает рождения и смерти пачками
+     */
+    public void changed(Species species, long delta) {
+        bySpecies[species.getId()].add(delta);
+        byType[speciesTypes[species.getId()].ordinal()].add(delta);
+        total.add(delta);
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getCount(Species species) {
+        return bySpecies[species.getId()].sum();
+    }
+
+    public long getCount(OrganismType type) {
+        return byType[type.ordinal()].sum();
+    }
+
+    /**
+     * Численность всех видов, индекс массива — Species.getId()
+     * Значения согласованы между собой, только если снимок берётся между шагами
+     */
+    public long[] snapshot() {
+        long[] counts = new long[bySpecies.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bySpecies[i].sum();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,45 @@
+package com.javarush.ivannikov.model;
+
+import java.nio.file.Path;
+
+/**
+ * Распределение вида по острову при заселении
+ * Возвращает ожидаемое число особей вида в клетке; дробная часть разыгрывается,
+ * так что в среднем по острову получается именно это число. Результат ограничивается
+ * вместимостью клетки для вида (Species.getMaxPerCell()).
+ * Реализация вызывается из нескольких потоков одновременно и не должна менять состояние.
+ */
+@FunctionalInterface
+public interface PopulationDensity {
+
+    double expected(int row, int col);
+
+    /**
+     * Одинаковая плотность во всех клетках
+     */
+    static PopulationDensity uniform(double perCell) {
+        if (perCell < 0) {
+            throw new IllegalArgumentException("Плотность не может быть отрицательной");
+        }
+        return (row, col) -> perCell;
+    }
+
+    /**
+     * Стаи вокруг случайных центров: плотность спадает от peak в центре по гауссиане
+     * с радиусом radius и обрезается на расстоянии трёх радиусов
+     *
+     * @param clusters число центров
+     * @param seed     зерно для выбора центров, чтобы заселение было воспроизводимым
+     */
+    static PopulationDensity clustered(int rows, int cols, int clusters, double radius, double peak, long seed) {
+        return new ClusteredDensity(rows, cols, clusters, radius, peak, seed);
+    }
+
+    /**
+     * Карта плотности из файла: изображение PGM (P2 или P5) или текстовая таблица чисел
+     * Карта растягивается на остров rows x cols, самое большое значение карты соответствует peak
+     */
+    static PopulationDensity fromFile(Path path, int rows, int cols, double peak) {
+        return DensityMap.load(path, rows, cols, peak);
+    }
+}
@@ -0,0 +1,81 @@
+package com.javarush.ivannikov.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Разреженная сетка: локация создаётся при первом обращении к клетке
+ * (заход животного, рождение, заселение) и удаляется между шагами, когда пустеет.
+ * Трава в клетке выводится из координаты, поэтому пересозданная клетка получает
+ * ту же траву, что и раньше.
+ */
+final class SparseGrid implements Grid {
+    private static final Comparator<Location> ROW_MAJOR =
+            Comparator.comparingInt(Location::getRow).thenComparingInt(Location::getCol);
+
+    private final LocationMap map;
+    private final int cols;
+    private Location[] occupied = new Location[0];
+
+    /**
+     * @param initializer настраивает только что созданную локацию (трава);
+     *                    вызывается под блокировкой сегмента таблицы
+     */
+    SparseGrid(int cols, int concurrency, PopulationCensus census, OrganismPool pool,
+               Vegetation vegetation, Consumer<Location> initializer) {
+        this.cols = cols;
+        this.map = new LocationMap(concurrency, key -> {
+            Location location = new Location((int) (key / cols), (int) (key % cols), census, pool, vegetation);
+            initializer.accept(location);
+            return location;
+        });
+    }
+
+    @Override
+    public Location get(int row, int col) {
+        return map.getOrCreate((long) row * cols + col);
+    }
+
+    @Override
+    public Location find(int row, int col) {
+        return map.get((long) row * cols + col);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Location> action) {
+        map.forEach(action);
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    /**
+     * Удаляет опустевшие клетки и запоминает занятые в порядке строк — это
+     * набор клеток, который обходит следующий шаг. Порядок не зависит от того,
+     * в каком порядке потоки создавали клетки, поэтому детерминированный режим
+     * даёт ту же динамику, что и на плотной сетке. Вызывать между шагами
+     */
+    Location[] prepareStep() {
+        List<Location> cells = new ArrayList<>((int) Math.min(map.size(), Integer.MAX_VALUE));
+        List<Location> empty = new ArrayList<>();
+        map.forEach(location -> (location.size() > 0 ? cells : empty).add(location));
+        for (Location location : empty) {
+            map.remove((long) location.getRow() * cols + location.getCol());
+        }
+        occupied = cells.toArray(new Location[0]);
+        Arrays.sort(occupied, ROW_MAJOR);
+        return occupied;
+    }
+
+    /**
+     * Клетки, занятые в начале текущего шага, в порядке строк
+     */
+    Location[] getOccupied() {
+        return occupied;
+    }
+}
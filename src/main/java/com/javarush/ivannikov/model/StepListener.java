@@ -0,0 +1,14 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Наблюдатель за шагами симуляции
+ * Вызывается потоком, запустившим simulateStep() (при Island.run — одним из потоков
+ * шага), после того как шаг полностью завершён (все локации обработаны, перемещения
+ * слиты); пока вызов не вернулся, остров не меняется, и его можно читать без
+ * блокировок. Долгую работу следует переносить в свой поток, иначе она задержит
+ * следующий шаг.
+ */
+@FunctionalInterface
+public interface StepListener {
+    void onStepCompleted(Island island);
+}
@@ -0,0 +1,11 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Получатель сводок шагов при запуске Island.run
+ * Вызывается асинхронно, в отдельном потоке и в порядке шагов; остров в это время
+ * продолжает считать следующие шаги, поэтому читать нужно сводку, а не остров.
+ */
+@FunctionalInterface
+public interface StepObserver {
+    void onStep(StepSummary summary);
+}
@@ -0,0 +1,192 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.event.SimulationEvents;
+import com.javarush.ivannikov.metrics.StepPhase;
+import com.javarush.ivannikov.metrics.StepProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполнение нескольких шагов подряд для Island.run
+ * <p>
+ * runOnWorkers запускает потоки на всё время прогона; поток i обрабатывает свою полосу
+ * строк и приходит к общему Phaser. Работа между шагами (слияние перемещений, пул,
+ * трава, наблюдатели, слой плотности следующего шага) выполняется в onAdvance потоком,
+ * пришедшим последним, пока остальные ждут, — так на шаг приходится один барьер.
+ * Phaser завершается, когда шаги кончились, животные вымерли или шаг упал с ошибкой.
+ * Собственный пул острова для этих потоков не подходит: onAdvance строит слой плотности
+ * задачами того же пула, а все его потоки в это время ждут у Phaser.
+ * <p>
+ * Сводки шагов передаются наблюдателю через однопоточный пул в порядке шагов.
+ */
+final class StepRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(StepRunner.class);
+
+    private final Island island;
+    private final OrganismPool pool;
+    private final long steps;
+    private final StepObserver observer;
+    private final ExecutorService delivery;
+    private volatile Throwable failure;
+    private long completed;
+    private long stepStarted;
+    private long processingStarted;
+
+    StepRunner(Island island, OrganismPool pool, long steps, StepObserver observer) {
+        this.island = island;
+        this.pool = pool;
+        this.steps = steps;
+        this.observer = observer;
+        this.delivery = observer == null ? null : Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "island-observer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    long runSequential() {
+        try {
+            while (completed < steps && island.countAliveOrganisms() > 0) {
+                island.simulateStep();
+                completed++;
+                publish();
+            }
+        } finally {
+            awaitDelivery();
+        }
+        return completed;
+    }
+
+    long runOnWorkers(int workers) {
+        if (steps == 0 || island.countAliveOrganisms() == 0) {
+            awaitDelivery();
+            return 0;
+        }
+        Phaser phaser = new Phaser(workers) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                return !advance();
+            }
+        };
+        stepStarted = StepProfiler.start();
+        processingStarted = island.buildDensityField(stepStarted);
+        int rows = island.getRows();
+        Thread[] threads = new Thread[workers];
+        for (int t = 0; t < workers; t++) {
+            int startRow = (int) ((long) t * rows / workers);
+            int endRow = (int) ((long) (t + 1) * rows / workers);
+            threads[t] = new Thread(() -> work(phaser, startRow, endRow), "island-step-" + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+            phaser.forceTermination();
+            Thread.currentThread().interrupt();
+        } finally {
+            awaitDelivery();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Прогон острова прерван на шаге " + island.getStep(), failure);
+        }
+        return completed;
+    }
+
+    /**
+     * Поток прогона живёт, пока идут шаги, поэтому доли пула, буфер событий и счётчики
+     * профилировщика он берёт взаймы и возвращает в конце, а не оставляет за собой
+     */
+    private void work(Phaser phaser, int startRow, int endRow) {
+        pool.attach();
+        SimulationEvents.attach();
+        StepProfiler.attach();
+        try {
+            while (!phaser.isTerminated()) {
+                if (failure == null) {
+                    long submitted = StepProfiler.start();
+                    try {
+                        island.processRows(startRow, endRow);
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                    StepProfiler.task(submitted, submitted);
+                }
+                phaser.arriveAndAwaitAdvance();
+            }
+        } finally {
+            StepProfiler.detach();
+            SimulationEvents.detach();
+            pool.detach();
+        }
+    }
+
+    /**
+     * Завершает шаг и готовит следующий; выполняется одним потоком, пока остальные ждут
+     *
+     * @return false, если прогон окончен
+     */
+    private boolean advance() {
+        if (failure != null) {
+            return false;
+        }
+        try {
+            island.finishProcessing(StepProfiler.phase(StepPhase.PROCESS, processingStarted));
+            island.completeStep(stepStarted);
+            completed++;
+            publish();
+            if (completed >= steps || island.countAliveOrganisms() == 0) {
+                return false;
+            }
+            stepStarted = StepProfiler.start();
+            processingStarted = island.buildDensityField(stepStarted);
+            return true;
+        } catch (Throwable e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void publish() {
+        if (delivery == null) {
+            return;
+        }
+        StepSummary summary = new StepSummary(island.getStep(), island.getCensus().snapshot());
+        delivery.execute(() -> {
+            try {
+                observer.onStep(summary);
+            } catch (RuntimeException e) {
+                LOG.error("Наблюдатель не обработал сводку шага {}", summary.getStep(), e);
+            }
+        });
+    }
+
+    private void awaitDelivery() {
+        if (delivery == null) {
+            return;
+        }
+        delivery.shutdown();
+        try {
+            while (!delivery.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOG.debug("Ожидание доставки сводок шагов");
+            }
+        } catch (InterruptedException e) {
+            delivery.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.javarush.ivannikov.model;
+
+/**
+ * Способ распределения локаций между потоками в шаге симуляции
+ * ROW_BANDS - остров делится на равные полосы строк, по одной задаче на поток
+ * TILES - остров делится на квадратные плитки, которые обрабатываются в ForkJoinPool
+ *         в четыре цвета, так что соседние плитки никогда не выполняются одновременно
+ * VIRTUAL - каждая непустая плитка (при размере плитки 1 — каждая локация) обрабатывается
+ *           в собственном виртуальном потоке; для сравнения с пулом платформенных потоков
+ *           на больших разреженных островах
+ */
+public enum StepScheduler {
+    ROW_BANDS,
+    TILES,
+    VIRTUAL,
+}
@@ -0,0 +1,44 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.entity.Species;
+
+/**
+ * Неизменяемая сводка острова после шага: номер шага и численность видов
+ */
+public final class StepSummary {
+    private final long step;
+    private final long total;
+    private final long[] counts;
+
+    StepSummary(long step, long[] counts) {
+        this.step = step;
+        this.counts = counts;
+        long sum = 0;
+        for (long count : counts) {
+            sum += count;
+        }
+        this.total = sum;
+    }
+
+    /**
+     * Номер шага, которым завершилась сводка (Island.getStep() после шага)
+     */
+    public long getStep() {
+        return step;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCount(Species species) {
+        return counts[species.getId()];
+    }
+
+    /**
+     * Численность всех видов, индекс массива — Species.getId()
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+}
@@ -0,0 +1,38 @@
+package com.javarush.ivannikov.model;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Ожидание задач шага, отправленных в пул
+ * Ждёт все задачи, даже если одна из них упала, чтобы после возврата ни одна задача
+ * не меняла состояние острова, и бросает первую ошибку: шаг с необработанными
+ * клетками не должен продолжаться слиянием, возвратом в пул и переходом к следующему шагу.
+ */
+final class StepTasks {
+    private StepTasks() {
+    }
+
+    static void awaitAll(List<? extends Future<?>> futures) {
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                for (Future<?> pending : futures) {
+                    pending.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Шаг прерван", e);
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Шаг прерван: задача завершилась с ошибкой", failure);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.metrics.StepProfiler;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Плиточный планировщик шага
+ * Плитки раскрашены в четыре цвета по чётности номера строки и столбца плитки, цвета
+ * обрабатываются по очереди. Две плитки одного цвета разделены по каждой оси хотя бы
+ * одной плиткой другого цвета, и за один ход животное уходит по каждой оси не дальше
+ * максимальной скорости видов. Поэтому сторона плитки не меньше удвоенной максимальной
+ * скорости: животные двух плиток одного цвета попадают в разделяющую их плитку
+ * с разных сторон, не дальше её середины, и две задачи никогда не трогают одну локацию
+ * одновременно — перемещение между клетками не требует блокировок.
+ * Внутри цвета плитки делятся на задачи ForkJoinPool по числу животных,
+ * замеренному на предыдущем шаге, и свободные потоки забирают работу у занятых.
+ */
+class TileScheduler {
+    private static final int MIN_ORGANISMS_PER_TASK = 64;
+
+    private final Island island;
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int tileCols;
+    private final int[][] tilesByColour = new int[4][];
+    private final int[] tileWeights;
+
+    TileScheduler(Island island, ForkJoinPool pool, int requestedTileSize) {
+        this.island = island;
+        this.pool = pool;
+        this.tileSize = Math.max(requestedTileSize, 2 * island.getSpeciesRegistry().getMaxSpeed());
+        int tileRows = (island.getRows() + tileSize - 1) / tileSize;
+        this.tileCols = (island.getCols() + tileSize - 1) / tileSize;
+        this.tileWeights = new int[tileRows * tileCols];
+        int[] counts = new int[4];
+        for (int tr = 0; tr < tileRows; tr++) {
+            for (int tc = 0; tc < tileCols; tc++) {
+                counts[colour(tr, tc)]++;
+            }
+        }
+        for (int c = 0; c < 4; c++) {
+            tilesByColour[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int tr = 0; tr < tileRows; tr++) {
+            for (int tc = 0; tc < tileCols; tc++) {
+                int tile = tr * tileCols + tc;
+                tilesByColour[colour(tr, tc)][counts[colour(tr, tc)]++] = tile;
+                tileWeights[tile] = tileSize * tileSize;
+            }
+        }
+    }
+
+    int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Обрабатывает все локации острова, цвет за цветом
+     */
+    void run() {
+        for (int[] tiles : tilesByColour) {
+            if (tiles.length == 0) {
+                continue;
+            }
+            long[] prefix = new long[tiles.length + 1];
+            for (int i = 0; i < tiles.length; i++) {
+                prefix[i + 1] = prefix[i] + tileWeights[tiles[i]];
+            }
+            long threshold = Math.max(prefix[tiles.length] / (pool.getParallelism() * 4L), MIN_ORGANISMS_PER_TASK);
+            pool.invoke(new TileTask(tiles, prefix, threshold, 0, tiles.length));
+        }
+    }
+
+    private void processTile(int tile) {
+        int fromRow = tile / tileCols * tileSize;
+        int fromCol = tile % tileCols * tileSize;
+        int toRow = Math.min(fromRow + tileSize, island.getRows());
+        int toCol = Math.min(fromCol + tileSize, island.getCols());
+        int organisms = 0;
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = fromCol; j < toCol; j++) {
+                Location location = island.getLocation(i, j);
+                organisms += location.size();
+                island.processLocation(location);
+            }
+        }
+        tileWeights[tile] = Math.max(organisms, 1);
+    }
+
+    private static int colour(int tileRow, int tileCol) {
+        return (tileRow & 1) << 1 | (tileCol & 1);
+    }
+
+    /**
+     * Задача над отрезком плиток одного цвета; делится пополам по суммарному весу
+     */
+    private final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] tiles;
+        private final long[] prefix;
+        private final long threshold;
+        private final int from;
+        private final int to;
+
+        private TileTask(int[] tiles, long[] prefix, long threshold, int from, int to) {
+            this.tiles = tiles;
+            this.prefix = prefix;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || prefix[to] - prefix[from] <= threshold) {
+                long started = StepProfiler.start();
+                for (int i = from; i < to; i++) {
+                    processTile(tiles[i]);
+                }
+                StepProfiler.task(0, started);
+                return;
+            }
+            long middle = (prefix[from] + prefix[to]) >>> 1;
+            int split = Arrays.binarySearch(prefix, from, to + 1, middle);
+            if (split < 0) {
+                split = -split - 1;
+            }
+            split = Math.min(Math.max(split, from + 1), to - 1);
+            invokeAll(new TileTask(tiles, prefix, threshold, from, split),
+                    new TileTask(tiles, prefix, threshold, split, to));
+        }
+    }
+}
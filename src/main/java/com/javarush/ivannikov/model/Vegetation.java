@@ -0,0 +1,181 @@
+package com.javarush.ivannikov.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Слой растительности острова: биомасса травы в каждой клетке
+ * <p>
+ * Биомасса хранится в примитивных массивах float блоками по CHUNK_SIZE клеток
+ * (клетка с номером row * cols + col). Блок создаётся, когда травоядное впервые
+ * ест в одной из его клеток; несозданный блок означает, что трава во всех его клетках
+ * выросла до capacity. Поэтому память занимают только объеденные участки, и слой
+ * подходит и для огромных разреженных островов.
+ * <p>
+ * Травоядное съедает bite за удачное питание, если в клетке есть столько травы.
+ * Клетку на шаге обрабатывает один поток, поэтому graze не берёт блокировок.
+ * После шага regrow одним проходом прибавляет regrowth к каждой клетке созданных
+ * блоков (не выше capacity); блок, который полностью отрос, освобождается.
+ * Цикл прохода — простой проход по массиву без ветвлений, его векторизует C2.
+ */
+public final class Vegetation {
+    private static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(float[][].class);
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int cols;
+    private final float capacity;
+    private final float regrowth;
+    private final float bite;
+    private final float[][] chunks;
+    private final ConcurrentLinkedQueue<Integer> created = new ConcurrentLinkedQueue<>();
+    private int[] active = new int[16];
+    private int activeCount;
+
+    /**
+     * @param capacity наибольшая биомасса клетки, с неё начинает каждая клетка
+     * @param regrowth прирост биомассы клетки за шаг
+     * @param bite     сколько травы съедает травоядное за удачное питание
+     */
+    public Vegetation(int rows, int cols, float capacity, float regrowth, float bite) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Размер острова должен быть положительным");
+        }
+        if (!(capacity > 0) || !(regrowth >= 0) || !(bite > 0) || bite > capacity) {
+            throw new IllegalArgumentException("Запас травы и порция должны быть положительными, "
+                    + "порция не больше запаса, прирост неотрицательным");
+        }
+        long blocks = (((long) rows * cols) + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (blocks > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Слишком большой остров для слоя растительности");
+        }
+        this.cols = cols;
+        this.capacity = capacity;
+        this.regrowth = regrowth;
+        this.bite = bite;
+        this.chunks = new float[(int) blocks][];
+    }
+
+    /**
+     * Съедает порцию травы в клетке, если её там достаточно
+     * Вызывается потоком, который обрабатывает клетку на текущем шаге
+     *
+     * @return true, если травоядное поело
+     */
+    public boolean graze(int row, int col) {
+        return graze((long) row * cols + col);
+    }
+
+    boolean graze(long cell) {
+        float[] chunk = chunk((int) (cell >>> CHUNK_SHIFT));
+        int i = (int) cell & CHUNK_MASK;
+        float biomass = chunk[i];
+        if (biomass < bite) {
+            return false;
+        }
+        chunk[i] = biomass - bite;
+        return true;
+    }
+
+    /**
+     * Биомасса травы в клетке
+     */
+    public float getBiomass(int row, int col) {
+        long cell = (long) row * cols + col;
+        float[] chunk = (float[]) CHUNKS.getAcquire(chunks, (int) (cell >>> CHUNK_SHIFT));
+        return chunk != null ? chunk[(int) cell & CHUNK_MASK] : capacity;
+    }
+
+    /**
+     * Хватит ли травы в клетке на одну порцию
+     */
+    public boolean hasFood(int row, int col) {
+        return getBiomass(row, col) >= bite;
+    }
+
+    /**
+     * Задаёт биомассу клетки, например при восстановлении из снимка
+     * Вызывается между шагами; значение capacity не создаёт блок
+     */
+    public void setBiomass(int row, int col, float biomass) {
+        if (!(biomass >= 0) || biomass > capacity) {
+            throw new IllegalArgumentException("Биомасса клетки должна быть в диапазоне от 0 до запаса травы");
+        }
+        long cell = (long) row * cols + col;
+        int index = (int) (cell >>> CHUNK_SHIFT);
+        if (biomass == capacity && CHUNKS.getAcquire(chunks, index) == null) {
+            return;
+        }
+        chunk(index)[(int) cell & CHUNK_MASK] = biomass;
+    }
+
+    public float getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Число блоков, где трава объедена и ещё не отросла
+     */
+    public int getActiveChunks() {
+        return activeCount + created.size();
+    }
+
+    /**
+     * Отращивает траву после шага; вызывается между шагами из одного потока
+     */
+    public void regrow() {
+        for (Integer index; (index = created.poll()) != null; ) {
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, activeCount * 2);
+            }
+            active[activeCount++] = index;
+        }
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int index = active[k];
+            if (grow(chunks[index]) < capacity) {
+                active[kept++] = index;
+            } else {
+                chunks[index] = null;
+            }
+        }
+        activeCount = kept;
+    }
+
+    /**
+     * @return наименьшая биомасса блока после прироста
+     */
+    private float grow(float[] chunk) {
+        float growth = regrowth;
+        float max = capacity;
+        float min = max;
+        for (int i = 0; i < chunk.length; i++) {
+            float biomass = Math.min(chunk[i] + growth, max);
+            chunk[i] = biomass;
+            min = Math.min(min, biomass);
+        }
+        return min;
+    }
+
+    /**
+     * Блок создаётся заполненным до capacity; если два потока создают его одновременно,
+     * в таблицу попадает один, и оба работают с ним
+     */
+    private float[] chunk(int index) {
+        float[] chunk = (float[]) CHUNKS.getAcquire(chunks, index);
+        if (chunk != null) {
+            return chunk;
+        }
+        float[] fresh = new float[CHUNK_SIZE];
+        Arrays.fill(fresh, capacity);
+        float[] witness = (float[]) CHUNKS.compareAndExchange(chunks, index, null, fresh);
+        if (witness != null) {
+            return witness;
+        }
+        created.add(index);
+        return fresh;
+    }
+}
@@ -0,0 +1,123 @@
+package com.javarush.ivannikov.model;
+
+import com.javarush.ivannikov.event.SimulationEvents;
+import com.javarush.ivannikov.metrics.StepProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Планировщик шага на виртуальных потоках: каждая непустая плитка (при tileSize = 1 —
+ * каждая локация) обрабатывается в собственном виртуальном потоке
+ * Потоки шага живут в executor, открытом в try-with-resources: выход из блока ждёт
+ * завершения всех задач, так что ни одна задача не переживает свой шаг.
+ * Плитки обрабатываются одновременно, поэтому перемещение между клетками идёт
+ * так же, как в ROW_BANDS: под блокировками локаций (LOCKED) или через очереди (BUFFERED).
+ * Плитки, пустые в начале шага, пропускаются — на разреженном острове задач
+ * столько, сколько занятых плиток, а не сколько клеток.
+ */
+class VirtualThreadScheduler {
+    private final Island island;
+    private final OrganismPool pool;
+    private final int tileSize;
+    private final int tileRows;
+    private final int tileCols;
+
+    VirtualThreadScheduler(Island island, OrganismPool pool, int tileSize) {
+        this.island = island;
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.tileRows = (island.getRows() + tileSize - 1) / tileSize;
+        this.tileCols = (island.getCols() + tileSize - 1) / tileSize;
+    }
+
+    int getTileSize() {
+        return tileSize;
+    }
+
+    void run() {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int tile = 0; tile < tileRows * tileCols; tile++) {
+                if (isEmpty(tile)) {
+                    continue;
+                }
+                int current = tile;
+                long submitted = StepProfiler.start();
+                futures.add(executor.submit(() -> runTask(() -> processTile(current), submitted)));
+            }
+        }
+        StepTasks.awaitAll(futures);
+    }
+
+    /**
+     * Вариант для разреженной сетки: занятые клетки (в порядке строк) делятся
+     * на задачи по tileSize * tileSize клеток
+     */
+    void run(Location[] cells) {
+        int chunk = tileSize * tileSize;
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < cells.length; from += chunk) {
+                int start = from;
+                int end = Math.min(from + chunk, cells.length);
+                long submitted = StepProfiler.start();
+                futures.add(executor.submit(() -> runTask(() -> {
+                    for (int i = start; i < end; i++) {
+                        island.processLocation(cells[i]);
+                    }
+                }, submitted)));
+            }
+        }
+        StepTasks.awaitAll(futures);
+    }
+
+    /**
+     * Виртуальный поток живёт одну задачу, поэтому доли пула, буфер событий и счётчики
+     * профилировщика он берёт взаймы и возвращает в конце
+     */
+    private void runTask(Runnable work, long submitted) {
+        long started = StepProfiler.start();
+        pool.attach();
+        SimulationEvents.attach();
+        StepProfiler.attach();
+        try {
+            work.run();
+            StepProfiler.task(submitted, started);
+        } finally {
+            StepProfiler.detach();
+            SimulationEvents.detach();
+            pool.detach();
+        }
+    }
+
+    private void processTile(int tile) {
+        int fromRow = tile / tileCols * tileSize;
+        int fromCol = tile % tileCols * tileSize;
+        int toRow = Math.min(fromRow + tileSize, island.getRows());
+        int toCol = Math.min(fromCol + tileSize, island.getCols());
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = fromCol; j < toCol; j++) {
+                island.processLocation(island.getLocation(i, j));
+            }
+        }
+    }
+
+    private boolean isEmpty(int tile) {
+        int fromRow = tile / tileCols * tileSize;
+        int fromCol = tile % tileCols * tileSize;
+        int toRow = Math.min(fromRow + tileSize, island.getRows());
+        int toCol = Math.min(fromCol + tileSize, island.getCols());
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = fromCol; j < toCol; j++) {
+                if (island.getLocation(i, j).size() > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
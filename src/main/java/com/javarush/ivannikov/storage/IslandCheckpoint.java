@@ -0,0 +1,318 @@
+package com.javarush.ivannikov.storage;
+
+import com.javarush.ivannikov.entity.Grass;
+import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.entity.SpeciesRegistry;
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.IslandSettings;
+import com.javarush.ivannikov.model.Location;
+import com.javarush.ivannikov.model.PopulationBackend;
+import com.javarush.ivannikov.model.Vegetation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Двоичный снимок острова, записываемый через отображение файла в память
+ * <p>
+ * Формат (little-endian):
+ * <pre>
+ * заголовок, 64 байта:
+ *   int magic, int version, int rows, int cols,
+ *   long step, long seed, byte seeded, byte vegetation, 6 байт выравнивания,
+ *   long records (записей в файле, включая устаревшие), long liveRecords, long reserved
+ * таблица клеток, rows * cols записей по 24 байта:
+ *   long индекс первой записи клетки, int число записей, byte трава, 3 байта выравнивания,
+ *   float биомасса травы (если vegetation = 1), 4 байта выравнивания
+ * записи животных, по 8 байт:
+ *   byte вид (Species.getId()), byte скорость, byte сытость, byte резерв, int вес
+ * </pre>
+ * Восстановление отображает файл и читает записи по смещениям из таблицы, без разбора текста.
+ * Инкрементальный снимок дописывает в конец файла только клетки, изменившиеся с прошлого
+ * снимка, и переставляет на них ссылки в таблице; когда устаревших записей становится
+ * больше живых, файл переписывается целиком.
+ * Снимок нужно снимать между шагами симуляции. Полный снимок пишется во временный файл
+ * и атомарно заменяет старый; инкрементальный пишется на месте и при сбое посреди записи
+ * может оставить смесь клеток двух шагов.
+ * Биомасса слоя растительности (Vegetation) меняется во всех объеденных клетках на каждом
+ * шаге, поэтому и полный, и инкрементальный снимок переписывают её для всех клеток таблицы.
+ * Снимок острова с растительностью восстанавливается только в остров с растительностью.
+ */
+public class IslandCheckpoint {
+    private static final Logger LOG = LoggerFactory.getLogger(IslandCheckpoint.class);
+    private static final int MAGIC = 0x444C5349;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int CELL_SIZE = 24;
+    private static final int CELL_BIOMASS = 16;
+    private static final int RECORD_SIZE = 8;
+
+    private static final int OFFSET_ROWS = 8;
+    private static final int OFFSET_COLS = 12;
+    private static final int OFFSET_STEP = 16;
+    private static final int OFFSET_SEED = 24;
+    private static final int OFFSET_SEEDED = 32;
+    private static final int OFFSET_VEGETATION = 33;
+    private static final int OFFSET_RECORDS = 40;
+    private static final int OFFSET_LIVE_RECORDS = 48;
+
+    private IslandCheckpoint() {
+    }
+
+    /**
+     * Записывает полный снимок острова и сбрасывает признаки изменения клеток
+     */
+    public static void writeFull(Island island, Path path) {
+        requireObjects(island);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temp);
+            int rows = island.getRows();
+            int cols = island.getCols();
+            long live = 0;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    live += island.getLocation(i, j).size();
+                }
+            }
+            try (MappedFile file = MappedFile.openForWrite(temp)) {
+                file.ensureSize(recordsStart(rows, cols) + live * RECORD_SIZE);
+                long record = 0;
+                List<Organism> buffer = new ArrayList<>();
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < cols; j++) {
+                        Location location = island.getLocation(i, j);
+                        location.copyOrganismsTo(buffer);
+                        record = writeCell(file, rows, cols, location, buffer, record);
+                        location.clearDirty();
+                    }
+                }
+                writeBiomass(file, island, rows, cols);
+                writeHeader(file, island, rows, cols, record, record);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Снимок острова записан: шаг {}, животных {}", island.getStep(), live);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок острова " + path, e);
+        }
+    }
+
+    /**
+     * Дописывает в существующий снимок только изменившиеся клетки
+     * Если снимка нет или он от острова другого размера, пишет полный снимок
+     */
+    public static void writeIncremental(Island island, Path path) {
+        requireObjects(island);
+        int rows = island.getRows();
+        int cols = island.getCols();
+        if (!Files.exists(path) || !matches(path, rows, cols)) {
+            writeFull(island, path);
+            return;
+        }
+        boolean rewrite;
+        try (MappedFile file = MappedFile.openForWrite(path)) {
+            long records = file.getLong(OFFSET_RECORDS);
+            long live = file.getLong(OFFSET_LIVE_RECORDS);
+            long appended = 0;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    Location location = island.getLocation(i, j);
+                    if (location.isDirty()) {
+                        appended += location.size();
+                    }
+                }
+            }
+            file.ensureSize(recordsStart(rows, cols) + (records + appended) * RECORD_SIZE);
+            long changedCells = 0;
+            List<Organism> buffer = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    Location location = island.getLocation(i, j);
+                    if (!location.isDirty()) {
+                        continue;
+                    }
+                    location.copyOrganismsTo(buffer);
+                    live -= file.getInt(cellPosition(rows, cols, i, j) + 8);
+                    live += buffer.size();
+                    records = writeCell(file, rows, cols, location, buffer, records);
+                    location.clearDirty();
+                    changedCells++;
+                }
+            }
+            writeBiomass(file, island, rows, cols);
+            writeHeader(file, island, rows, cols, records, live);
+            LOG.info("Инкрементальный снимок: шаг {}, изменено клеток {}", island.getStep(), changedCells);
+            rewrite = records - live > live;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось дописать снимок острова " + path, e);
+        }
+        if (rewrite) {
+            writeFull(island, path);
+        }
+    }
+
+    /**
+     * Восстанавливает остров из снимка
+     *
+     * @param settings параметры нового острова; не изменяются. Seed берётся из снимка, если он
+     *                 там есть, а реестр видов должен совпадать с тем, с которым снимок записан
+     * @throws IllegalArgumentException если файл не является снимком этой версии или settings
+     *                                  не подходят к нему (хранилище не OBJECTS, нет слоя растительности)
+     * @throws IllegalStateException если животные снимка не помещаются в клетки при включённом
+     *                               ограничении вместимости (снимок острова без ограничения)
+     */
+    public static Island restore(Path path, IslandSettings settings) {
+        try (MappedFile file = MappedFile.openForRead(path)) {
+            if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Файл " + path + " не является снимком острова");
+            }
+            if (file.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Снимок " + path + " версии " + file.getInt(4)
+                        + " не поддерживается, ожидается версия " + VERSION);
+            }
+            if (settings.getBackend() != PopulationBackend.OBJECTS) {
+                throw new IllegalArgumentException("Снимок восстанавливается только в остров с хранилищем "
+                        + PopulationBackend.OBJECTS + ", а не " + settings.getBackend());
+            }
+            int rows = file.getInt(OFFSET_ROWS);
+            int cols = file.getInt(OFFSET_COLS);
+            boolean savedVegetation = file.getByte(OFFSET_VEGETATION) != 0;
+            if (savedVegetation && !settings.hasVegetation()) {
+                throw new IllegalArgumentException("Снимок " + path
+                        + " содержит слой растительности; восстановите его с IslandSettings.setVegetation");
+            }
+            IslandSettings restored = settings.copy();
+            if (file.getByte(OFFSET_SEEDED) != 0) {
+                restored.setSeed(file.getLong(OFFSET_SEED));
+            }
+            Island island = new Island(rows, cols, restored);
+            try {
+                Vegetation vegetation = savedVegetation ? island.getVegetation() : null;
+                SpeciesRegistry species = island.getSpeciesRegistry();
+                long recordsStart = recordsStart(rows, cols);
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < cols; j++) {
+                        long cell = cellPosition(rows, cols, i, j);
+                        long first = file.getLong(cell);
+                        int count = file.getInt(cell + 8);
+                        Location location = island.getLocation(i, j);
+                        location.setGrass(file.getByte(cell + 12) != 0 ? new Grass(true) : null);
+                        if (vegetation != null) {
+                            vegetation.setBiomass(i, j,
+                                    Math.min(file.getFloat(cell + CELL_BIOMASS), vegetation.getCapacity()));
+                        }
+                        for (int k = 0; k < count; k++) {
+                            long position = recordsStart + (first + k) * RECORD_SIZE;
+                            int id = file.getByte(position);
+                            if (id < 0 || id >= species.size()) {
+                                throw new IllegalArgumentException("Снимок " + path
+                                        + " содержит неизвестный вид " + id);
+                            }
+                            Organism organism = species.get(id).create();
+                            organism.setSpeed(file.getByte(position + 1));
+                            organism.setSatiety(file.getByte(position + 2));
+                            organism.setWeight(file.getInt(position + 4));
+                            if (!island.addOrganism(organism, i, j)) {
+                                throw new IllegalStateException("Снимок " + path + ": в клетке (" + i + ", " + j
+                                        + ") больше животных вида " + organism.getSpecies().getKey()
+                                        + ", чем позволяет вместимость; восстановите с setCapacityLimits(false)");
+                            }
+                        }
+                        location.clearDirty();
+                    }
+                }
+                island.restoreStep(file.getLong(OFFSET_STEP));
+            } catch (RuntimeException e) {
+                island.shutdownExecutor();
+                throw e;
+            }
+            LOG.info("Остров {}х{} восстановлен из снимка: шаг {}, животных {}",
+                    rows, cols, island.getStep(), island.countAliveOrganisms());
+            return island;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок острова " + path, e);
+        }
+    }
+
+    private static long writeCell(MappedFile file, int rows, int cols, Location location,
+                                  List<Organism> organisms, long firstRecord) {
+        long recordsStart = recordsStart(rows, cols);
+        long record = firstRecord;
+        for (Organism organism : organisms) {
+            long position = recordsStart + record * RECORD_SIZE;
+            file.putByte(position, (byte) organism.getSpecies().getId());
+            file.putByte(position + 1, (byte) organism.getSpeed());
+            file.putByte(position + 2, (byte) organism.getSatiety());
+            file.putByte(position + 3, (byte) 0);
+            file.putInt(position + 4, organism.getWeight());
+            record++;
+        }
+        long cell = cellPosition(rows, cols, location.getRow(), location.getCol());
+        file.putLong(cell, firstRecord);
+        file.putInt(cell + 8, organisms.size());
+        file.putByte(cell + 12, (byte) (location.getGrass() != null ? 1 : 0));
+        organisms.clear();
+        return record;
+    }
+
+    /**
+     * Переписывает биомассу всех клеток; без слоя растительности ничего не делает
+     */
+    private static void writeBiomass(MappedFile file, Island island, int rows, int cols) {
+        Vegetation vegetation = island.getVegetation();
+        if (vegetation == null) {
+            return;
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                file.putFloat(cellPosition(rows, cols, i, j) + CELL_BIOMASS, vegetation.getBiomass(i, j));
+            }
+        }
+    }
+
+    private static void writeHeader(MappedFile file, Island island, int rows, int cols, long records, long live) {
+        file.putInt(0, MAGIC);
+        file.putInt(4, VERSION);
+        file.putInt(OFFSET_ROWS, rows);
+        file.putInt(OFFSET_COLS, cols);
+        file.putLong(OFFSET_STEP, island.getStep());
+        file.putLong(OFFSET_SEED, island.isSeeded() ? island.getSeed() : 0);
+        file.putByte(OFFSET_SEEDED, (byte) (island.isSeeded() ? 1 : 0));
+        file.putByte(OFFSET_VEGETATION, (byte) (island.getVegetation() != null ? 1 : 0));
+        file.putLong(OFFSET_RECORDS, records);
+        file.putLong(OFFSET_LIVE_RECORDS, live);
+    }
+
+    private static boolean matches(Path path, int rows, int cols) {
+        try (MappedFile file = MappedFile.openForRead(path)) {
+            return file.size() >= HEADER_SIZE && file.getInt(0) == MAGIC && file.getInt(4) == VERSION
+                    && file.getInt(OFFSET_ROWS) == rows && file.getInt(OFFSET_COLS) == cols;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void requireObjects(Island island) {
+        if (!island.hasLocations()) {
+            throw new IllegalStateException("Снимок поддерживается только для острова с объектами Location");
+        }
+        if (island.isSparse()) {
+            throw new IllegalStateException("Снимок хранит таблицу всех клеток и не поддерживает разреженную сетку");
+        }
+    }
+
+    private static long cellPosition(int rows, int cols, int row, int col) {
+        return HEADER_SIZE + ((long) row * cols + col) * CELL_SIZE;
+    }
+
+    private static long recordsStart(int rows, int cols) {
+        return HEADER_SIZE + (long) rows * cols * CELL_SIZE;
+    }
+}
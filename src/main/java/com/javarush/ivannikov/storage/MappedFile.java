@@ -0,0 +1,120 @@
+package com.javarush.ivannikov.storage;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Файл, отображённый в память окнами по 1 ГБ
+ * Один MappedByteBuffer не может быть больше 2 ГБ, поэтому адрес делится на
+ * номер окна и смещение в нём. Все поля формата выровнены по своему размеру,
+ * а размер окна кратен 16, так что значение никогда не пересекает границу окон.
+ */
+final class MappedFile implements AutoCloseable {
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private MappedByteBuffer[] windows = new MappedByteBuffer[0];
+    private long size;
+
+    private MappedFile(FileChannel channel, boolean writable, long size) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        map(size);
+    }
+
+    static MappedFile openForWrite(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedFile(channel, true, channel.size());
+    }
+
+    static MappedFile openForRead(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedFile(channel, false, channel.size());
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Увеличивает файл минимум до newSize байт и отображает новые окна
+     */
+    void ensureSize(long newSize) throws IOException {
+        if (newSize > size) {
+            map(newSize);
+        }
+    }
+
+    private void map(long newSize) throws IOException {
+        int count = (int) ((newSize + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+        int first = windows.length == 0 ? 0 : windows.length - 1;
+        windows = Arrays.copyOf(windows, Math.max(count, windows.length));
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int i = first; i < count; i++) {
+            long offset = (long) i << WINDOW_SHIFT;
+            long length = Math.min(WINDOW_SIZE, newSize - offset);
+            windows[i] = channel.map(mode, offset, length);
+            windows[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        size = newSize;
+    }
+
+    byte getByte(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & WINDOW_MASK));
+    }
+
+    void putByte(long position, byte value) {
+        windows[(int) (position >>> WINDOW_SHIFT)].put((int) (position & WINDOW_MASK), value);
+    }
+
+    int getInt(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].getInt((int) (position & WINDOW_MASK));
+    }
+
+    void putInt(long position, int value) {
+        windows[(int) (position >>> WINDOW_SHIFT)].putInt((int) (position & WINDOW_MASK), value);
+    }
+
+    float getFloat(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].getFloat((int) (position & WINDOW_MASK));
+    }
+
+    void putFloat(long position, float value) {
+        windows[(int) (position >>> WINDOW_SHIFT)].putFloat((int) (position & WINDOW_MASK), value);
+    }
+
+    long getLong(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].getLong((int) (position & WINDOW_MASK));
+    }
+
+    void putLong(long position, long value) {
+        windows[(int) (position >>> WINDOW_SHIFT)].putLong((int) (position & WINDOW_MASK), value);
+    }
+
+    /**
+     * Сбрасывает изменённые страницы на диск
+     */
+    void force() {
+        for (MappedByteBuffer window : windows) {
+            window.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writable) {
+            force();
+        }
+        windows = new MappedByteBuffer[0];
+        channel.close();
+    }
+}
@@ -0,0 +1,421 @@
+package com.javarush.ivannikov.view;
+
+import com.javarush.ivannikov.entity.Species;
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.StepListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный HTTP-сервер для наблюдения за островом во время прогона
+ * <p>
+ * Остров уменьшается до сетки вида не больше viewSize x viewSize: клетка вида собирает
+ * прямоугольник клеток острова, и для неё передаются преобладающий вид и число животных.
+ * После каждого snapshotEvery-го шага наблюдатель копирует численность по клеткам вида
+ * в свободный буфер; если оба буфера ещё заняты кодировщиком, кадр пропускается, поэтому
+ * сервер никогда не задерживает шаг дольше копирования. Фоновый поток сравнивает кадр
+ * с предыдущим и рассылает клиентам только изменившиеся клетки.
+ * <p>
+ * Адреса:
+ * <pre>
+ * /        — страница с холстом, которая читает поток /stream
+ * /stream  — бесконечный ответ из двоичных кадров: первый полный, дальше разностные
+ * /frame   — один полный кадр последнего шага
+ * /species — номера и ключи видов, по строке на вид
+ * </pre>
+ * Кадр (little-endian), 28 + 8 * records байт:
+ * <pre>
+ *   int magic, int kind (0 — полный, 1 — разностный), long step,
+ *   int viewRows, int viewCols, int records,
+ *   records x (int index, int value)
+ * </pre>
+ * index — номер клетки вида (row * viewCols + col), value — (вид &lt;&lt; 24) | число животных,
+ * число ограничено 0xFFFFFF; пустая клетка передаётся как вид 0xFF и число 0. Полный кадр
+ * содержит только непустые клетки, остальные клиент считает пустыми. Если клиент не успевает
+ * читать, его очередь сбрасывается и он получает полный кадр заново.
+ */
+public final class LiveViewServer implements StepListener, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(LiveViewServer.class);
+    private static final int MAGIC = 0x57454956;
+    private static final int HEADER_SIZE = 28;
+    private static final int RECORD_SIZE = 8;
+    private static final int KIND_FULL = 0;
+    private static final int KIND_DIFF = 1;
+    private static final int EMPTY = 0xFF << 24;
+    private static final int MAX_COUNT = 0xFFFFFF;
+    private static final int CLIENT_QUEUE_FRAMES = 16;
+    private static final int MAX_CLIENTS = 16;
+    private static final long POLL_MILLIS = 500;
+    private static final Snapshot POISON = new Snapshot(0);
+
+    private final Island island;
+    private final List<Species> species;
+    private final int viewRows;
+    private final int viewCols;
+    private final int snapshotEvery;
+    private final int[] rowToView;
+    private final int[] colToView;
+    private final int[] cellCounts;
+    private final BlockingQueue<Snapshot> free = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<Snapshot> filled = new ArrayBlockingQueue<>(3);
+    private final int[] shown;
+    private final int[] next;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Object publishLock = new Object();
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Thread encoder;
+    private final byte[] page;
+    private byte[] latestFull;
+    private long shownStep;
+    private volatile boolean closed;
+    private long skippedFrames;
+
+    public LiveViewServer(Island island, int port) {
+        this(island, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256, 1);
+    }
+
+    /**
+     * Запускает сервер и подписывается на шаги острова
+     *
+     * @param viewSize      наибольшая сторона сетки вида в клетках
+     * @param snapshotEvery снимать кадр каждый snapshotEvery-й шаг
+     */
+    public LiveViewServer(Island island, InetSocketAddress address, int viewSize, int snapshotEvery) {
+        if (island == null || address == null) {
+            throw new IllegalArgumentException("Остров и адрес сервера не могут быть пустыми");
+        }
+        if (!island.hasLocations()) {
+            throw new IllegalStateException("Просмотр по клеткам доступен только для хранилища OBJECTS");
+        }
+        if (viewSize <= 0 || snapshotEvery <= 0) {
+            throw new IllegalArgumentException("Размер вида и период кадров должны быть положительными");
+        }
+        this.island = island;
+        this.species = island.getSpeciesRegistry().all();
+        this.viewRows = Math.min(island.getRows(), viewSize);
+        this.viewCols = Math.min(island.getCols(), viewSize);
+        this.snapshotEvery = snapshotEvery;
+        this.rowToView = scale(island.getRows(), viewRows);
+        this.colToView = scale(island.getCols(), viewCols);
+        this.cellCounts = new int[species.size()];
+        int cells = viewRows * viewCols;
+        for (int i = 0; i < 2; i++) {
+            free.add(new Snapshot(cells * species.size()));
+        }
+        this.shown = new int[cells];
+        this.next = new int[cells];
+        Arrays.fill(shown, EMPTY);
+        this.shownStep = island.getStep();
+        this.page = loadPage();
+        AtomicInteger threads = new AtomicInteger();
+        this.handlers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "island-view-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть сервер просмотра на " + address, e);
+        }
+        server.createContext("/", this::handlePage);
+        server.createContext("/stream", this::handleStream);
+        server.createContext("/frame", this::handleFrame);
+        server.createContext("/species", this::handleSpecies);
+        server.setExecutor(handlers);
+        server.start();
+        this.encoder = new Thread(this::encodeFrames, "island-view-encoder");
+        encoder.setDaemon(true);
+        encoder.start();
+        island.addStepListener(this);
+        LOG.info("Просмотр острова: http://{}:{}/, сетка вида {}x{}", address.getHostString(),
+                server.getAddress().getPort(), viewRows, viewCols);
+    }
+
+    private static int[] scale(int size, int viewSize) {
+        int[] map = new int[size];
+        for (int i = 0; i < size; i++) {
+            map[i] = (int) ((long) i * viewSize / size);
+        }
+        return map;
+    }
+
+    /**
+     * Порт, на котором слушает сервер (полезно, если при создании был указан порт 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Сколько кадров пропущено, потому что кодировщик не успевал
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    @Override
+    public void onStepCompleted(Island island) {
+        if (island.getStep() % snapshotEvery != 0 || closed) {
+            return;
+        }
+        Snapshot snapshot = free.poll();
+        if (snapshot == null) {
+            skippedFrames++;
+            return;
+        }
+        snapshot.step = island.getStep();
+        Arrays.fill(snapshot.counts, 0);
+        int speciesCount = species.size();
+        island.forEachLocation(location -> {
+            if (location.size() == 0) {
+                return;
+            }
+            location.countAliveBySpecies(cellCounts);
+            int base = (rowToView[location.getRow()] * viewCols + colToView[location.getCol()]) * speciesCount;
+            for (int s = 0; s < speciesCount; s++) {
+                snapshot.counts[base + s] += cellCounts[s];
+            }
+        });
+        filled.add(snapshot);
+    }
+
+    private void encodeFrames() {
+        try {
+            while (true) {
+                Snapshot snapshot = filled.take();
+                if (snapshot == POISON) {
+                    return;
+                }
+                summarize(snapshot);
+                long step = snapshot.step;
+                free.add(snapshot);
+                publish(step);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Преобладающий вид и число животных каждой клетки вида в next
+     */
+    private void summarize(Snapshot snapshot) {
+        int speciesCount = species.size();
+        for (int cell = 0; cell < next.length; cell++) {
+            int base = cell * speciesCount;
+            int total = 0;
+            int dominant = 0;
+            for (int s = 0; s < speciesCount; s++) {
+                int count = snapshot.counts[base + s];
+                total += count;
+                if (count > snapshot.counts[base + dominant]) {
+                    dominant = s;
+                }
+            }
+            next[cell] = total == 0 ? EMPTY : dominant << 24 | Math.min(total, MAX_COUNT);
+        }
+    }
+
+    /**
+     * Рассылает разностный кадр; клиенты, потерявшие очередь, получают полный.
+     * Показанный кадр меняется под publishLock, чтобы новый клиент получил полный
+     * кадр ровно того шага, с которого продолжатся его разностные кадры.
+     */
+    private void publish(long step) {
+        byte[] diff = encode(KIND_DIFF, step, next, shown);
+        synchronized (publishLock) {
+            System.arraycopy(next, 0, shown, 0, next.length);
+            shownStep = step;
+            latestFull = null;
+            for (Client client : clients) {
+                if (client.needsFull) {
+                    client.needsFull = false;
+                    client.offer(currentFull());
+                } else {
+                    client.offer(diff);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param previous предыдущий кадр для разностного кадра или null для полного
+     */
+    private byte[] encode(int kind, long step, int[] cells, int[] previous) {
+        int records = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (previous == null ? cells[cell] != EMPTY : cells[cell] != previous[cell]) {
+                records++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + records * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(kind);
+        buffer.putLong(step);
+        buffer.putInt(viewRows);
+        buffer.putInt(viewCols);
+        buffer.putInt(records);
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (previous == null ? cells[cell] != EMPTY : cells[cell] != previous[cell]) {
+                buffer.putInt(cell);
+                buffer.putInt(cells[cell]);
+            }
+        }
+        return buffer.array();
+    }
+
+    private void handleStream(HttpExchange exchange) throws IOException {
+        if (clients.size() >= MAX_CLIENTS) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        Client client = new Client();
+        synchronized (publishLock) {
+            client.offer(currentFull());
+            clients.add(client);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (!closed) {
+                byte[] frame = client.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (frame != null) {
+                    out.write(frame);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Клиент просмотра отключился: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clients.remove(client);
+            exchange.close();
+        }
+    }
+
+    private void handleFrame(HttpExchange exchange) throws IOException {
+        byte[] full;
+        synchronized (publishLock) {
+            full = currentFull();
+        }
+        respond(exchange, "application/octet-stream", full);
+    }
+
+    /**
+     * Полный кадр того, что сейчас показано; вызывать под publishLock
+     */
+    private byte[] currentFull() {
+        if (latestFull == null) {
+            latestFull = encode(KIND_FULL, shownStep, shown, null);
+        }
+        return latestFull;
+    }
+
+    private void handleSpecies(HttpExchange exchange) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Species s : species) {
+            text.append(s.getId()).append(' ').append(s.getKey()).append('\n');
+        }
+        respond(exchange, "text/plain; charset=utf-8", text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handlePage(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, "text/html; charset=utf-8", page);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] loadPage() {
+        try (InputStream in = LiveViewServer.class.getResourceAsStream("/view/index.html")) {
+            if (in == null) {
+                throw new IllegalStateException("Не найдена страница просмотра /view/index.html");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать страницу просмотра", e);
+        }
+    }
+
+    /**
+     * Отписывается от острова и останавливает сервер; открытые потоки клиентов закрываются
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        island.removeStepListener(this);
+        filled.add(POISON);
+        try {
+            encoder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(1);
+        handlers.shutdownNow();
+        LOG.info("Просмотр острова остановлен, пропущено кадров: {}", skippedFrames);
+    }
+
+    private static final class Snapshot {
+        private final int[] counts;
+        private long step;
+
+        private Snapshot(int size) {
+            this.counts = new int[size];
+        }
+    }
+
+    private static final class Client {
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_FRAMES);
+        private boolean needsFull;
+
+        /**
+         * Клиент, который не успевает читать, теряет очередь и получит полный кадр
+         */
+        private void offer(byte[] frame) {
+            if (!queue.offer(frame)) {
+                queue.clear();
+                needsFull = true;
+            }
+        }
+    }
+}
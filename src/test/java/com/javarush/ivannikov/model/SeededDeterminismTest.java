@@ -0,0 +1,58 @@
+package com.javarush.ivannikov.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Детерминированный режим: остров с одним seed проходит одну и ту же траекторию
+ * численности видов при любом числе потоков
+ */
+class SeededDeterminismTest {
+    private static final long SEED = 42;
+    private static final int SIZE = 40;
+    private static final int STEPS = 15;
+
+    @ParameterizedTest
+    @EnumSource(StepScheduler.class)
+    void censusDoesNotDependOnParallelism(StepScheduler scheduler) {
+        List<long[]> single = trajectory(scheduler, 1);
+        List<long[]> parallel = trajectory(scheduler, 8);
+
+        assertTrue(Arrays.stream(single.get(0)).sum() > 0, "остров не заселён");
+        assertEquals(single.size(), parallel.size());
+        for (int step = 0; step < single.size(); step++) {
+            assertArrayEquals(single.get(step), parallel.get(step),
+                    "численность видов разошлась после шага " + step);
+        }
+    }
+
+    /**
+     * Численность видов после заселения и после каждого шага
+     */
+    private static List<long[]> trajectory(StepScheduler scheduler, int parallelism) {
+        Island island = new Island(SIZE, SIZE, new IslandSettings()
+                .setSeed(SEED)
+                .setScheduler(scheduler)
+                .setParallelism(parallelism));
+        try {
+            island.populate();
+            List<long[]> census = new ArrayList<>();
+            census.add(island.getCensus().snapshot());
+            for (int step = 0; step < STEPS; step++) {
+                island.simulateStep();
+                census.add(island.getCensus().snapshot());
+            }
+            return census;
+        } finally {
+            island.shutdownExecutor();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.javarush.ivannikov.storage;
+
+import com.javarush.ivannikov.entity.Organism;
+import com.javarush.ivannikov.model.Island;
+import com.javarush.ivannikov.model.IslandSettings;
+import com.javarush.ivannikov.model.Location;
+import com.javarush.ivannikov.model.PopulationBackend;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Полный и инкрементальный снимок: восстановленный остров совпадает с исходным
+ * по животным, траве и биомассе каждой клетки
+ */
+class IslandCheckpointTest {
+    private static final int SIZE = 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresFullAndIncrementalCheckpoint() throws IOException {
+        Island island = new Island(SIZE, SIZE, settings().setSeed(7));
+        Path checkpoint = directory.resolve("island.bin");
+        try {
+            island.populate();
+            island.simulateStep();
+            IslandCheckpoint.writeFull(island, checkpoint);
+            island.simulateStep();
+            IslandCheckpoint.writeIncremental(island, checkpoint);
+
+            // несколько изменённых клеток дописываются в конец файла, а не переписывают его
+            long size = Files.size(checkpoint);
+            island.addOrganism(island.getSpeciesRegistry().get("WOLF").create(), 3, 4);
+            island.getLocation(5, 5).setGrass(null);
+            island.getVegetation().setBiomass(5, 5, 0.5f);
+            IslandCheckpoint.writeIncremental(island, checkpoint);
+            assertTrue(Files.size(checkpoint) > size, "изменённые клетки не дописаны в снимок");
+
+            Island restored = IslandCheckpoint.restore(checkpoint, settings());
+            try {
+                assertSameIsland(island, restored);
+                island.simulateStep();
+                restored.simulateStep();
+                assertArrayEquals(island.getCensus().snapshot(), restored.getCensus().snapshot(),
+                        "восстановленный остров продолжил другую траекторию");
+            } finally {
+                restored.shutdownExecutor();
+            }
+        } finally {
+            island.shutdownExecutor();
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedSettings() {
+        Island island = new Island(SIZE, SIZE, settings());
+        Path checkpoint = directory.resolve("island.bin");
+        try {
+            island.populate();
+            IslandCheckpoint.writeFull(island, checkpoint);
+        } finally {
+            island.shutdownExecutor();
+        }
+        assertThrows(IllegalArgumentException.class, () -> IslandCheckpoint.restore(checkpoint,
+                settings().setBackend(PopulationBackend.COMPACT)));
+        assertThrows(IllegalArgumentException.class, () -> IslandCheckpoint.restore(checkpoint,
+                new IslandSettings().setParallelism(2)));
+    }
+
+    private static IslandSettings settings() {
+        return new IslandSettings()
+                .setParallelism(2)
+                .setCapacityLimits(false)
+                .setVegetation(10, 1, 1);
+    }
+
+    private static void assertSameIsland(Island expected, Island actual) {
+        assertEquals(expected.getStep(), actual.getStep());
+        assertArrayEquals(expected.getCensus().snapshot(), actual.getCensus().snapshot());
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                Location location = expected.getLocation(i, j);
+                Location restored = actual.getLocation(i, j);
+                String cell = "клетка (" + i + ", " + j + ")";
+                assertEquals(describe(location), describe(restored), cell);
+                assertEquals(location.getGrass() != null, restored.getGrass() != null, cell);
+                assertEquals(expected.getVegetation().getBiomass(i, j), actual.getVegetation().getBiomass(i, j), cell);
+            }
+        }
+    }
+
+    /**
+     * Животные клетки в порядке хранения: вид, скорость, сытость, вес
+     */
+    private static List<String> describe(Location location) {
+        List<String> organisms = new ArrayList<>();
+        for (Organism organism : location.getOrganisms()) {
+            organisms.add(organism.getSpecies().getKey() + ":" + organism.getSpeed()
+                    + ":" + organism.getSatiety() + ":" + organism.getWeight());
+        }
+        return organisms;
+    }
+}